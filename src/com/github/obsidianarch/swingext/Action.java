@@ -0,0 +1,36 @@
+package com.github.obsidianarch.swingext;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method of a SimpleFrame's partial class as the action for an action command. The
+ * method must not be private, and either has no parameters or a single parameter which is a
+ * subclass of SimpleFrame. When the {@link ActionProcessor} is run over the partial class it
+ * generates an {@link ActionDispatcher} named after the class with "Actions" on the end,
+ * which calls the methods directly and has a constant for each action command. An action can
+ * be run in the background, off the event dispatch thread, by giving it one of SimpleFrame's
+ * BACKGROUND policies.
+ *
+ * @author Austin
+ */
+@Documented
+@Retention( RetentionPolicy.RUNTIME )
+@Target( ElementType.METHOD )
+public @interface Action {
+
+    /**
+     * @return The action command which calls the method, or the method's name if empty.
+     */
+    String value() default "";
+
+    /**
+     * @return Where the action runs, {@link SimpleFrame#FOREGROUND} or one of the BACKGROUND
+     *         policies.
+     */
+    int policy() default SimpleFrame.FOREGROUND;
+
+}
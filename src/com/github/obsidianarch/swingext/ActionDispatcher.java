@@ -0,0 +1,42 @@
+package com.github.obsidianarch.swingext;
+
+/**
+ * Calls the action methods of a SimpleFrame's partial class. One is generated for each
+ * partial class with {@link Action} methods by the {@link ActionProcessor}, so actions are
+ * called without any reflection.
+ *
+ * @author Austin
+ */
+public interface ActionDispatcher {
+
+    /**
+     * Calls the action method for an action command.
+     *
+     * @param frame
+     *            The frame the action command came from.
+     * @param command
+     *            The action command.
+     * @return If there was an action method for the command.
+     * @throws Exception
+     *             If the action method threw an exception.
+     */
+    boolean dispatch( SimpleFrame frame, String command ) throws Exception;
+
+    /**
+     * @param command
+     *            The action command.
+     * @return If there is an action method for the command.
+     */
+    boolean hasAction( String command );
+
+    /**
+     * @param command
+     *            The action command.
+     * @return Where the command's action runs, {@link SimpleFrame#FOREGROUND} or one of the
+     *         BACKGROUND policies.
+     */
+    default int getPolicy( String command ) {
+        return SimpleFrame.FOREGROUND;
+    }
+
+}
@@ -0,0 +1,369 @@
+package com.github.obsidianarch.swingext;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates an {@link ActionDispatcher} for every class with {@link Action} methods, named
+ * after the class with "Actions" on the end. The dispatcher switches on the action command and
+ * calls the methods directly, and has a constant for each action command so a misspelt
+ * command is a compile error. Methods which can't be actions, and commands used by more than
+ * one method, are reported as errors.
+ *
+ * @author Austin
+ */
+@SupportedAnnotationTypes( "com.github.obsidianarch.swingext.Action" )
+public class ActionProcessor extends AbstractProcessor {
+
+    //
+    // Constants
+    //
+
+    /** The SimpleFrame constant for each action policy, used in the generated code. */
+    private static final String[] POLICIES = { "FOREGROUND", "BACKGROUND_DROP", "BACKGROUND_QUEUE", "BACKGROUND_CANCEL_PREVIOUS" };
+
+    //
+    // Overrides
+    //
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process( Set< ? extends TypeElement > annotations, RoundEnvironment round ) {
+        // group the action methods by the class they're in
+        Map< TypeElement, List< ExecutableElement > > partials = new LinkedHashMap<>();
+        for ( Element element : round.getElementsAnnotatedWith( Action.class ) ) {
+            ExecutableElement method = ( ExecutableElement ) element;
+            TypeElement partial = ( TypeElement ) method.getEnclosingElement();
+
+            List< ExecutableElement > methods = partials.get( partial );
+            if ( methods == null ) partials.put( partial, methods = new ArrayList<>() );
+            methods.add( method );
+        }
+
+        for ( Map.Entry< TypeElement, List< ExecutableElement > > entry : partials.entrySet() ) {
+            generate( entry.getKey(), entry.getValue() );
+        }
+
+        return true;
+    }
+
+    //
+    // Actions
+    //
+
+    /**
+     * Writes the dispatcher for a partial class, unless any of its action methods are
+     * invalid.
+     *
+     * @param partial
+     *            The partial class.
+     * @param methods
+     *            The action methods in the class.
+     */
+    private void generate( TypeElement partial, List< ExecutableElement > methods ) {
+        if ( !check( partial ) ) return;
+
+        TypeMirror frameType = processingEnv.getElementUtils().getTypeElement( SimpleFrame.class.getCanonicalName() ).asType();
+        boolean isFrame = processingEnv.getTypeUtils().isAssignable( partial.asType(), frameType );
+
+        List< String > commands = new ArrayList<>();
+        List< String > calls = new ArrayList<>();
+        List< Integer > policies = new ArrayList<>();
+        boolean valid = true;
+
+        for ( ExecutableElement method : methods ) {
+            String command = method.getAnnotation( Action.class ).value();
+            if ( command.isEmpty() ) command = method.getSimpleName().toString();
+
+            if ( commands.contains( command ) ) {
+                error( method, "The action command \"" + command + "\" is already used by another method!" );
+                valid = false;
+                continue;
+            }
+
+            int policy = method.getAnnotation( Action.class ).policy();
+            if ( ( policy < 0 ) || ( policy >= POLICIES.length ) ) {
+                error( method, "Unknown action policy: " + policy + "!" );
+                valid = false;
+                continue;
+            }
+
+            String call = getCall( partial, method, frameType, isFrame );
+            if ( call == null ) {
+                valid = false;
+                continue;
+            }
+
+            commands.add( command );
+            calls.add( call );
+            policies.add( policy );
+        }
+
+        if ( !valid ) return;
+
+        String packageName = processingEnv.getElementUtils().getPackageOf( partial ).getQualifiedName().toString();
+        String name = getDispatcherName( partial );
+
+        try ( Writer out = processingEnv.getFiler().createSourceFile( packageName.isEmpty() ? name : packageName + '.' + name, partial ).openWriter() ) {
+            out.write( write( packageName, name, partial, commands, calls, policies ) );
+        }
+        catch ( IOException e ) {
+            error( partial, "Could not write " + name + ": " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Checks that the generated dispatcher can see the partial class.
+     *
+     * @param partial
+     *            The partial class.
+     * @return If the partial class can be used.
+     */
+    private boolean check( TypeElement partial ) {
+        for ( Element type = partial; !( type instanceof PackageElement ); type = type.getEnclosingElement() ) {
+            if ( type.getModifiers().contains( Modifier.PRIVATE ) ) {
+                error( partial, "The partial class cannot be private!" );
+                return false;
+            }
+
+            NestingKind kind = ( ( TypeElement ) type ).getNestingKind();
+            if ( ( kind == NestingKind.LOCAL ) || ( kind == NestingKind.ANONYMOUS ) ) {
+                error( partial, "The partial class cannot be local or anonymous!" );
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Builds the statement which calls an action method with the frame, reporting an error if
+     * the method can't be an action.
+     *
+     * @param partial
+     *            The partial class.
+     * @param method
+     *            The action method.
+     * @param frameType
+     *            The SimpleFrame type.
+     * @param isFrame
+     *            If the partial class is a SimpleFrame.
+     * @return The call, or {@code null} if the method can't be an action.
+     */
+    private String getCall( TypeElement partial, ExecutableElement method, TypeMirror frameType, boolean isFrame ) {
+        if ( method.getModifiers().contains( Modifier.PRIVATE ) ) {
+            error( method, "Action methods cannot be private!" );
+            return null;
+        }
+
+        String argument;
+        if ( method.getParameters().isEmpty() ) {
+            argument = "";
+        }
+        else {
+            TypeMirror param = processingEnv.getTypeUtils().erasure( method.getParameters().get( 0 ).asType() );
+            if ( ( method.getParameters().size() != 1 ) || !processingEnv.getTypeUtils().isAssignable( param, frameType ) ) {
+                error( method, "Action methods can only have a single parameter, which must be a subclass of SimpleFrame!" );
+                return null;
+            }
+
+            argument = processingEnv.getTypeUtils().isSameType( param, frameType ) ? "frame" : "( " + param + " ) frame";
+        }
+
+        // the dispatcher only passes on Exceptions, anything else wouldn't compile
+        TypeMirror exceptionType = processingEnv.getElementUtils().getTypeElement( Exception.class.getCanonicalName() ).asType();
+        TypeMirror errorType = processingEnv.getElementUtils().getTypeElement( Error.class.getCanonicalName() ).asType();
+        for ( TypeMirror thrown : method.getThrownTypes() ) {
+            if ( !processingEnv.getTypeUtils().isAssignable( thrown, exceptionType ) && !processingEnv.getTypeUtils().isAssignable( thrown, errorType ) ) {
+                error( method, "Action methods can only throw Exceptions, not " + thrown + "!" );
+                return null;
+            }
+        }
+
+        String target;
+        if ( method.getModifiers().contains( Modifier.STATIC ) ) {
+            target = partial.getQualifiedName().toString();
+        }
+        else if ( isFrame ) {
+            target = "( ( " + partial.getQualifiedName() + " ) frame )"; // actions are called on the frame
+        }
+        else {
+            error( method, "Action methods must be static unless the partial class is a subclass of SimpleFrame!" );
+            return null;
+        }
+
+        return target + '.' + method.getSimpleName() + ( argument.isEmpty() ? "();" : "( " + argument + " );" );
+    }
+
+    /**
+     * Writes the source of a dispatcher.
+     *
+     * @param packageName
+     *            The package of the partial class.
+     * @param name
+     *            The simple name of the dispatcher.
+     * @param partial
+     *            The partial class.
+     * @param commands
+     *            The action commands.
+     * @param calls
+     *            The statement which calls the action method of each command.
+     * @param policies
+     *            Where each command's action runs.
+     * @return The source of the dispatcher.
+     */
+    private static String write( String packageName, String name, TypeElement partial, List< String > commands, List< String > calls, List< Integer > policies ) {
+        List< String > constants = getConstantNames( commands );
+        StringBuilder out = new StringBuilder();
+
+        if ( !packageName.isEmpty() ) out.append( "package " ).append( packageName ).append( ";\n\n" );
+
+        out.append( "/**\n * Calls the action methods of {@link " ).append( partial.getQualifiedName() ).append( "}.\n */\n" );
+        out.append( "public final class " ).append( name ).append( " implements com.github.obsidianarch.swingext.ActionDispatcher {\n" );
+
+        for ( int i = 0; i < commands.size(); i++ ) {
+            out.append( "\n    /** The \"" ).append( escape( commands.get( i ) ).replace( "*/", "*&#47;" ) ).append( "\" action command. */\n" );
+            out.append( "    public static final String " ).append( constants.get( i ) ).append( " = \"" ).append( escape( commands.get( i ) ) ).append( "\";\n" );
+        }
+
+        out.append( "\n    @Override\n" );
+        out.append( "    public boolean dispatch( com.github.obsidianarch.swingext.SimpleFrame frame, String command ) throws Exception {\n" );
+        out.append( "        if ( command == null ) return false;\n\n" );
+        out.append( "        switch ( command ) {\n" );
+        for ( int i = 0; i < commands.size(); i++ ) {
+            out.append( "            case " ).append( constants.get( i ) ).append( ":\n" );
+            out.append( "                " ).append( calls.get( i ) ).append( "\n" );
+            out.append( "                return true;\n" );
+        }
+        out.append( "            default:\n                return false;\n        }\n    }\n" );
+
+        out.append( "\n    @Override\n" );
+        out.append( "    public boolean hasAction( String command ) {\n" );
+        out.append( "        if ( command == null ) return false;\n\n" );
+        out.append( "        switch ( command ) {\n" );
+        for ( String constant : constants ) {
+            out.append( "            case " ).append( constant ).append( ":\n" );
+        }
+        out.append( "                return true;\n            default:\n                return false;\n        }\n    }\n" );
+
+        // only the actions which don't run in the foreground need a policy
+        if ( Collections.max( policies ) != SimpleFrame.FOREGROUND ) {
+            out.append( "\n    @Override\n" );
+            out.append( "    public int getPolicy( String command ) {\n" );
+            out.append( "        if ( command == null ) return com.github.obsidianarch.swingext.SimpleFrame.FOREGROUND;\n\n" );
+            out.append( "        switch ( command ) {\n" );
+            for ( int i = 0; i < commands.size(); i++ ) {
+                if ( policies.get( i ) == SimpleFrame.FOREGROUND ) continue;
+
+                out.append( "            case " ).append( constants.get( i ) ).append( ":\n" );
+                out.append( "                return com.github.obsidianarch.swingext.SimpleFrame." ).append( POLICIES[ policies.get( i ) ] ).append( ";\n" );
+            }
+            out.append( "            default:\n                return com.github.obsidianarch.swingext.SimpleFrame.FOREGROUND;\n        }\n    }\n" );
+        }
+
+        out.append( "\n}\n" );
+        return out.toString();
+    }
+
+    /**
+     * Names the constant for each action command, "buildAndExecute" becomes
+     * "BUILD_AND_EXECUTE".
+     *
+     * @param commands
+     *            The action commands.
+     * @return The name of each command's constant.
+     */
+    private static List< String > getConstantNames( List< String > commands ) {
+        List< String > names = new ArrayList<>();
+        Set< String > used = new HashSet<>();
+
+        for ( String command : commands ) {
+            StringBuilder name = new StringBuilder();
+            for ( int i = 0; i < command.length(); i++ ) {
+                char c = command.charAt( i );
+
+                if ( Character.isUpperCase( c ) && ( i > 0 ) && Character.isLowerCase( command.charAt( i - 1 ) ) ) name.append( '_' ); // a new word
+                name.append( ( ( c < 128 ) && ( Character.isLetterOrDigit( c ) || ( c == '_' ) ) ) ? Character.toUpperCase( c ) : '_' ); // plain ASCII, whatever the source encoding
+            }
+            if ( ( name.length() == 0 ) || !Character.isJavaIdentifierStart( name.charAt( 0 ) ) ) name.insert( 0, '_' );
+
+            // two commands may have the same name, like "fooBar" and "foo_bar"
+            String unique = name.toString();
+            for ( int n = 2; !used.add( unique ) || SourceVersion.isKeyword( unique ); n++ ) {
+                unique = name.toString() + '_' + n;
+            }
+            names.add( unique );
+        }
+
+        return names;
+    }
+
+    /**
+     * @param partial
+     *            The partial class.
+     * @return The simple name of the partial class's dispatcher, nested classes are joined
+     *         by underscores.
+     */
+    private static String getDispatcherName( TypeElement partial ) {
+        String name = partial.getSimpleName().toString();
+        for ( Element outer = partial.getEnclosingElement(); outer instanceof TypeElement; outer = outer.getEnclosingElement() ) {
+            name = outer.getSimpleName() + "_" + name;
+        }
+
+        return name + "Actions";
+    }
+
+    /**
+     * @param s
+     *            The string.
+     * @return The string, escaped to go in a string literal.
+     */
+    private static String escape( String s ) {
+        StringBuilder out = new StringBuilder();
+        for ( char c : s.toCharArray() ) {
+            if ( ( c == '"' ) || ( c == '\\' ) ) out.append( '\\' ).append( c );
+            else if ( c < ' ' ) out.append( String.format( "\\%03o", ( int ) c ) ); // a unicode escape could end the line
+            else if ( c > '~' ) out.append( String.format( "\\u%04x", ( int ) c ) );
+            else out.append( c );
+        }
+
+        return out.toString();
+    }
+
+    /**
+     * Reports an error on an element, failing the compile.
+     *
+     * @param element
+     *            The element the error is on.
+     * @param message
+     *            The error.
+     */
+    private void error( Element element, String message ) {
+        processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR, message, element );
+    }
+
+}
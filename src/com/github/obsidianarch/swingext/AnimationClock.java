@@ -0,0 +1,174 @@
+package com.github.obsidianarch.swingext;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.Timer;
+
+/**
+ * Drives the animation of many ImageViews from a single timer. Each view asks to be ticked
+ * at the time its current frame is up, and every view which is due is ticked in the same
+ * pass, so their repaints are painted together. Passes are never closer together than the
+ * maximum frame rate allows. Only used on the event dispatch thread.
+ *
+ * @author Austin
+ */
+final class AnimationClock implements ActionListener {
+
+    //
+    // Constants
+    //
+
+    /** The default most passes per second. */
+    public static final int DEFAULT_FRAME_RATE = 60;
+
+    //
+    // Fields
+    //
+
+    /** Wakes the clock up when the next view is due. */
+    private final Timer                  timer     = new Timer( 0, this );
+
+    /** The views waiting to be ticked, and the {@link System#nanoTime()} they are due at. */
+    private final Map< ImageView, Long > deadlines = new HashMap<>();
+
+    /** The least time between two passes, in nanoseconds. */
+    private long                         interval;
+
+    /** The {@link System#nanoTime()} of the last pass. */
+    private long                         lastPass;
+
+    /** If a pass is ticking the views, the timer is restarted once it is done. */
+    private boolean                      passing;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Creates a new AnimationClock at the default frame rate.
+     */
+    public AnimationClock() {
+        timer.setRepeats( false ); // restarted for the next view which is due
+        setMaxFrameRate( DEFAULT_FRAME_RATE );
+    }
+
+    //
+    // Setters
+    //
+
+    /**
+     * Changes the most passes the clock makes per second. Views whose frames are shorter than
+     * that skip frames to keep time.
+     *
+     * @param fps
+     *            The new frame rate.
+     * @throws IllegalArgumentException
+     *             If {@code fps} was not positive.
+     */
+    public void setMaxFrameRate( int fps ) throws IllegalArgumentException {
+        if ( fps <= 0 ) throw new IllegalArgumentException( "fps must be positive!" );
+
+        interval = TimeUnit.SECONDS.toNanos( 1 ) / fps;
+    }
+
+    //
+    // Getters
+    //
+
+    /**
+     * @return The most passes the clock makes per second.
+     */
+    public int getMaxFrameRate() {
+        return ( int ) ( TimeUnit.SECONDS.toNanos( 1 ) / interval );
+    }
+
+    //
+    // Actions
+    //
+
+    /**
+     * Ticks the view at the given time, replacing the time it was due at before.
+     *
+     * @param view
+     *            The view.
+     * @param deadline
+     *            The {@link System#nanoTime()} to tick the view at.
+     */
+    public void schedule( ImageView view, long deadline ) {
+        deadlines.put( view, deadline );
+        if ( !passing ) restartTimer();
+    }
+
+    /**
+     * Stops ticking the view.
+     *
+     * @param view
+     *            The view.
+     */
+    public void cancel( ImageView view ) {
+        if ( deadlines.remove( view ) == null ) return;
+
+        if ( deadlines.isEmpty() ) {
+            timer.stop();
+        }
+        else if ( !passing ) {
+            restartTimer();
+        }
+    }
+
+    /**
+     * Wakes the clock up when the next view is due, but not sooner than the frame rate
+     * allows.
+     */
+    private void restartTimer() {
+        if ( deadlines.isEmpty() ) return;
+
+        long next = Long.MAX_VALUE;
+        for ( long deadline : deadlines.values() ) {
+            next = Math.min( next, deadline );
+        }
+        next = Math.max( next, lastPass + interval );
+
+        long delay = next - System.nanoTime();
+        timer.setInitialDelay( ( int ) Math.max( 0, TimeUnit.NANOSECONDS.toMillis( delay + TimeUnit.MILLISECONDS.toNanos( 1 ) - 1 ) ) ); // never wake up early
+        timer.restart();
+    }
+
+    //
+    // Overrides
+    //
+
+    @Override
+    public void actionPerformed( ActionEvent e ) {
+        long now = System.nanoTime();
+        lastPass = now;
+
+        // take every view which is due out first, they schedule themselves again as they tick
+        List< ImageView > due = new ArrayList<>();
+        for ( Map.Entry< ImageView, Long > entry : deadlines.entrySet() ) {
+            if ( entry.getValue() <= now ) due.add( entry.getKey() );
+        }
+        for ( ImageView view : due ) {
+            deadlines.remove( view );
+        }
+
+        passing = true;
+        try {
+            for ( ImageView view : due ) {
+                view.tick( now );
+            }
+        }
+        finally {
+            passing = false;
+        }
+
+        restartTimer();
+    }
+
+}
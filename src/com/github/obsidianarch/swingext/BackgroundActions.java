@@ -0,0 +1,249 @@
+package com.github.obsidianarch.swingext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Runs a SimpleFrame's background actions off the event dispatch thread, on virtual threads
+ * when the JVM has them, and reports back to the frame on the event dispatch thread when each
+ * one finishes. Every action command keeps track of its own run, so the frame's policy decides
+ * what happens when the command comes again while it's still running. Only used on the event
+ * dispatch thread.
+ *
+ * @author Austin
+ */
+final class BackgroundActions {
+
+    //
+    // Constants
+    //
+
+    /** Runs the background actions of every SimpleFrame. */
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    //
+    // Fields
+    //
+
+    /** The frame the actions belong to. */
+    private final SimpleFrame            frame;
+
+    /** The run of each action command which has been run. */
+    private final Map< String, Run >     runs     = new HashMap<>();
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Creates a new BackgroundActions for a frame.
+     *
+     * @param frame
+     *            The frame the actions belong to.
+     */
+    public BackgroundActions( SimpleFrame frame ) {
+        this.frame = frame;
+    }
+
+    //
+    // Getters
+    //
+
+    /**
+     * @param command
+     *            The action command.
+     * @return If the command's action is running, a cancelled action is running until it
+     *         returns.
+     */
+    public boolean isRunning( String command ) {
+        Run run = runs.get( command );
+        return ( run != null ) && ( run.task != null );
+    }
+
+    //
+    // Actions
+    //
+
+    /**
+     * Creates the executor the actions run on, one virtual thread per action if the JVM has
+     * them, otherwise a pool of daemon threads.
+     *
+     * @return The executor.
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            // looked up so the library still runs on JVMs without virtual threads
+            return ( ExecutorService ) Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+        }
+        catch ( ReflectiveOperationException e ) {
+            return Executors.newCachedThreadPool( new ThreadFactory() {
+
+                @Override
+                public Thread newThread( Runnable r ) {
+                    Thread thread = new Thread( r );
+                    thread.setName( "Background Action" );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+
+            } );
+        }
+    }
+
+    /**
+     * Runs a command's action in the background, unless the policy says otherwise while it's
+     * already running.
+     *
+     * @param command
+     *            The action command.
+     * @param policy
+     *            What to do if the action is already running, one of SimpleFrame's
+     *            BACKGROUND constants.
+     */
+    public void run( String command, int policy ) {
+        Run run = runs.get( command );
+        if ( run == null ) runs.put( command, run = new Run() );
+
+        if ( run.task != null ) {
+            switch ( policy ) {
+                case SimpleFrame.BACKGROUND_DROP:
+                    return; // already running
+
+                case SimpleFrame.BACKGROUND_QUEUE:
+                    run.queued++;
+                    return; // started once the running one finishes
+
+                case SimpleFrame.BACKGROUND_CANCEL_PREVIOUS:
+                    run.task.cancel( true );
+                    break;
+            }
+        }
+
+        start( command, run );
+    }
+
+    /**
+     * Cancels a command's action if it's running, along with any which were queued. The
+     * action's thread is interrupted, it's up to the action to stop.
+     *
+     * @param command
+     *            The action command.
+     */
+    public void cancel( String command ) {
+        Run run = runs.get( command );
+        if ( run == null ) return;
+
+        run.queued = 0;
+        if ( run.task != null ) run.task.cancel( true );
+    }
+
+    /**
+     * Starts a command's action on the executor.
+     *
+     * @param command
+     *            The action command.
+     * @param run
+     *            The command's run.
+     */
+    private void start( final String command, final Run run ) {
+        final FutureTask< Boolean > task = new FutureTask<>( new Callable< Boolean >() {
+
+            @Override
+            public Boolean call() throws Exception {
+                return frame.getDispatcher().dispatch( frame, command );
+            }
+
+        } );
+        run.task = task;
+
+        EXECUTOR.execute( new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                }
+                finally {
+                    // a cancelled action is only finished once it returns, not when it's cancelled
+                    SwingUtilities.invokeLater( new Runnable() {
+
+                        @Override
+                        public void run() {
+                            finish( command, run, task );
+                        }
+
+                    } );
+                }
+            }
+
+        } );
+    }
+
+    /**
+     * Reports a finished action to the frame, and starts the next queued one. Called on the
+     * event dispatch thread.
+     *
+     * @param command
+     *            The action command.
+     * @param run
+     *            The command's run.
+     * @param task
+     *            The action which finished.
+     */
+    private void finish( String command, Run run, FutureTask< Boolean > task ) {
+        // a cancelled action may finish after the one which replaced it started
+        if ( run.task == task ) {
+            run.task = null;
+
+            if ( run.queued > 0 ) {
+                run.queued--;
+                start( command, run );
+            }
+        }
+
+        if ( task.isCancelled() ) return; // cancelled actions aren't reported
+
+        try {
+            if ( !task.get() ) System.err.println( "No method found in partial class by the name \"" + command + "\"!" );
+            else frame.actionFinished( command, null );
+        }
+        catch ( ExecutionException e ) {
+            frame.actionFinished( command, e.getCause() );
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt(); // it's already done, this can't happen
+        }
+    }
+
+    //
+    // Nested Classes
+    //
+
+    /**
+     * The state of one action command's background action.
+     *
+     * @author Austin
+     */
+    private static final class Run {
+
+        //
+        // Fields
+        //
+
+        /** The running action, or {@code null} if it isn't running. */
+        FutureTask< Boolean > task;
+
+        /** The number of times the action is waiting to be run again. */
+        int                   queued;
+
+    }
+
+}
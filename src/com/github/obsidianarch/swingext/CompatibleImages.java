@@ -0,0 +1,133 @@
+package com.github.obsidianarch.swingext;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * Creates images in the pixel format of a screen. Drawing an image which is already in the
+ * screen's format is a straight copy, and Java2D can keep it in video memory, while drawing
+ * any other format converts every pixel on every paint. Images keep their transparency, so
+ * opaque images use the cheaper opaque formats and transparent ones keep their alpha.
+ *
+ * @author Austin
+ */
+final class CompatibleImages {
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Nothing to construct, everything is static.
+     */
+    private CompatibleImages() {
+    }
+
+    //
+    // Actions
+    //
+
+    /**
+     * Creates a blank image in the screen's format. Off screen, transparent images are
+     * premultiplied, which Java2D scales and draws without converting.
+     *
+     * @param gc
+     *            The screen's configuration, or {@code null} if the image isn't on a screen
+     *            yet.
+     * @param width
+     *            The width of the image.
+     * @param height
+     *            The height of the image.
+     * @param transparency
+     *            The transparency the image needs, one of the {@link Transparency}
+     *            constants.
+     * @return The new image.
+     */
+    public static BufferedImage create( GraphicsConfiguration gc, int width, int height, int transparency ) {
+        if ( gc != null ) return gc.createCompatibleImage( width, height, transparency );
+        return new BufferedImage( width, height, ( transparency == Transparency.OPAQUE ) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE );
+    }
+
+    /**
+     * Creates a blank image to scale another into, which keeps its transparency.
+     *
+     * @param gc
+     *            The screen's configuration, or {@code null} if the image isn't on a screen
+     *            yet.
+     * @param source
+     *            The image which will be scaled.
+     * @param width
+     *            The width of the scaled image.
+     * @param height
+     *            The height of the scaled image.
+     * @return The new image.
+     */
+    public static BufferedImage createScaled( GraphicsConfiguration gc, BufferedImage source, int width, int height ) {
+        return create( gc, Math.max( 1, width ), Math.max( 1, height ), source.getTransparency() );
+    }
+
+    /**
+     * Gets an image as a BufferedImage. BufferedImages are used as they are, anything else is
+     * drawn into a premultiplied image so its alpha is kept.
+     *
+     * @param image
+     *            The image, which must have finished loading.
+     * @return The image as a BufferedImage.
+     */
+    public static BufferedImage toBufferedImage( Image image ) {
+        if ( image instanceof BufferedImage ) return ( BufferedImage ) image;
+
+        BufferedImage bi = new BufferedImage( image.getWidth( null ), image.getHeight( null ), BufferedImage.TYPE_INT_ARGB_PRE );
+        {
+            Graphics2D grafix = bi.createGraphics();
+            grafix.setComposite( AlphaComposite.Src );
+            grafix.drawImage( image, 0, 0, null );
+            grafix.dispose();
+        }
+        return bi;
+    }
+
+    /**
+     * Copies an image into the screen's format, unless it is already in it.
+     *
+     * @param bi
+     *            The image to convert.
+     * @param gc
+     *            The screen's configuration, or {@code null} if the image isn't on a screen
+     *            yet.
+     * @return The image in the screen's format, which is {@code bi} itself if no copy was
+     *         needed.
+     */
+    public static BufferedImage convert( BufferedImage bi, GraphicsConfiguration gc ) {
+        if ( isCompatible( bi, gc ) ) return bi;
+
+        BufferedImage copy = create( gc, bi.getWidth(), bi.getHeight(), bi.getTransparency() );
+        {
+            Graphics2D grafix = copy.createGraphics();
+            grafix.setComposite( AlphaComposite.Src );
+            grafix.drawImage( bi, 0, 0, null );
+            grafix.dispose();
+        }
+        return copy;
+    }
+
+    //
+    // Getters
+    //
+
+    /**
+     * @param bi
+     *            The image to check.
+     * @param gc
+     *            The screen's configuration, may be {@code null}.
+     * @return If the image is in the screen's format, every image is if there is no screen.
+     */
+    public static boolean isCompatible( BufferedImage bi, GraphicsConfiguration gc ) {
+        return ( gc == null ) || bi.getColorModel().equals( gc.getColorModel( bi.getTransparency() ) );
+    }
+
+}
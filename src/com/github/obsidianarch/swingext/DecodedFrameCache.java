@@ -0,0 +1,419 @@
+package com.github.obsidianarch.swingext;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of decoded files, shared by every ImageView which loads the
+ * same file so it is only decoded once. Files are keyed by their path, modification time,
+ * length and subsampling, so a file which changes on disk is decoded again. The frames are
+ * shared between ImageViews and must not be modified. Files which are still shown by an
+ * ImageView are never evicted, the least recently used of the rest are evicted whenever the
+ * cache holds more bytes than its budget. An ImageView stops showing a file once it is given
+ * other frames or is garbage collected, the cache only holds it weakly.
+ *
+ * @author Austin
+ */
+public class DecodedFrameCache {
+
+    //
+    // Constants
+    //
+
+    /** The default budget, in bytes. */
+    public static final long               DEFAULT_BUDGET = 256L * 1024 * 1024;
+
+    /** The cache shared by every ImageView unless it is given another. */
+    private static final DecodedFrameCache SHARED         = new DecodedFrameCache();
+
+    //
+    // Fields
+    //
+
+    /** The decoded files, iterated from least to most recently used. */
+    private final Map< Key, Entry > entries = new LinkedHashMap<>( 16, 0.75f, true );
+
+    /** The most bytes the cache may hold. */
+    private long                    budget;
+
+    /** The bytes currently held. */
+    private long                    size;
+
+    /** The number of lookups which found a decoded file. */
+    private long                    hits;
+
+    /** The number of lookups which didn't find a decoded file. */
+    private long                    misses;
+
+    /** The number of decoded files evicted to stay under the budget. */
+    private long                    evictions;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a new DecodedFrameCache with the default budget.
+     */
+    public DecodedFrameCache() {
+        this( DEFAULT_BUDGET );
+    }
+
+    /**
+     * Constructs a new DecodedFrameCache.
+     *
+     * @param budget
+     *            The most bytes the cache may hold.
+     * @throws IllegalArgumentException
+     *             If {@code budget} was negative.
+     */
+    public DecodedFrameCache( long budget ) throws IllegalArgumentException {
+        setBudget( budget );
+    }
+
+    //
+    // Setters
+    //
+
+    /**
+     * Changes the most bytes the cache may hold, evicting decoded files which aren't shown if
+     * it now holds too many.
+     *
+     * @param budget
+     *            The new budget, in bytes.
+     * @throws IllegalArgumentException
+     *             If {@code budget} was negative.
+     */
+    public synchronized void setBudget( long budget ) throws IllegalArgumentException {
+        if ( budget < 0 ) throw new IllegalArgumentException( "budget cannot be negative!" );
+
+        this.budget = budget;
+        trim();
+    }
+
+    //
+    // Getters
+    //
+
+    /**
+     * @return The cache shared by every ImageView unless it is given another.
+     */
+    public static DecodedFrameCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * @return The most bytes the cache may hold.
+     */
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return The bytes currently held, including files which are shown and can't be evicted.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return The number of decoded files currently held.
+     */
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return The number of lookups which found a decoded file.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return The number of lookups which didn't find a decoded file.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return The number of decoded files evicted to stay under the budget.
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    //
+    // Actions
+    //
+
+    /**
+     * Gets a decoded file and marks it as shown, it can't be evicted until it is released or
+     * the holder is garbage collected.
+     *
+     * @param key
+     *            The file.
+     * @param holder
+     *            The ImageView which shows the file.
+     * @return The decoded file, or {@code null} if it isn't cached.
+     */
+    synchronized Entry acquire( Key key, Object holder ) {
+        Entry entry = entries.get( key );
+
+        if ( entry != null ) {
+            hits++;
+            entry.holders.add( new WeakReference<>( holder ) );
+        }
+        else {
+            misses++;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Caches a decoded file and marks it as shown. If another ImageView decoded the same file
+     * in the meantime, that copy is used instead.
+     *
+     * @param key
+     *            The file.
+     * @param frames
+     *            The decoded frames.
+     * @param delays
+     *            How long each frame is shown for, in milliseconds.
+     * @param changes
+     *            The region which changed going into each frame.
+     * @param holder
+     *            The ImageView which shows the file.
+     * @return The decoded file.
+     */
+    synchronized Entry add( Key key, BufferedImage[] frames, int[] delays, Rectangle[] changes, Object holder ) {
+        Entry entry = entries.get( key );
+
+        if ( entry == null ) {
+            entry = new Entry( this, frames, delays, changes );
+            entries.put( key, entry );
+            size += entry.size;
+        }
+
+        entry.holders.add( new WeakReference<>( holder ) );
+        trim();
+
+        return entry;
+    }
+
+    /**
+     * Marks a decoded file as no longer shown by one ImageView, once no ImageView shows it
+     * the file may be evicted.
+     *
+     * @param entry
+     *            The decoded file.
+     * @param holder
+     *            The ImageView which no longer shows the file.
+     * @return If another ImageView still shows the file.
+     */
+    synchronized boolean release( Entry entry, Object holder ) {
+        Iterator< WeakReference< Object > > it = entry.holders.iterator();
+        while ( it.hasNext() ) {
+            if ( it.next().get() == holder ) {
+                it.remove();
+                break; // it may hold the file more than once
+            }
+        }
+        trim();
+
+        return entry.isShown();
+    }
+
+    /**
+     * Removes every decoded file which isn't shown.
+     */
+    public synchronized void clear() {
+        Iterator< Entry > it = entries.values().iterator();
+        while ( it.hasNext() ) {
+            Entry entry = it.next();
+            if ( entry.isShown() ) continue;
+
+            size -= entry.size;
+            it.remove();
+        }
+    }
+
+    /**
+     * Evicts the least recently used decoded files which aren't shown until the cache is
+     * under budget.
+     */
+    private void trim() {
+        Iterator< Entry > it = entries.values().iterator();
+        while ( ( size > budget ) && it.hasNext() ) {
+            Entry entry = it.next();
+            if ( entry.isShown() ) continue; // still shown, evicting it wouldn't free anything
+
+            size -= entry.size;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    //
+    // Nested Classes
+    //
+
+    /**
+     * Identifies a decoded file by its path, modification time, length and subsampling.
+     *
+     * @author Austin
+     */
+    static final class Key {
+
+        //
+        // Fields
+        //
+
+        /** The canonical path of the file. */
+        private final String path;
+
+        /** When the file was last modified. */
+        private final long   modified;
+
+        /** The length of the file. */
+        private final long   length;
+
+        /** Only every {@code subsampling}th pixel across and down was decoded. */
+        private final int    subsampling;
+
+        //
+        // Constructors
+        //
+
+        /**
+         * Creates a new Key for the file as it is now.
+         *
+         * @param f
+         *            The file.
+         * @param subsampling
+         *            Only every {@code subsampling}th pixel across and down is decoded.
+         * @throws IOException
+         *             If the file's path could not be resolved.
+         */
+        public Key( File f, int subsampling ) throws IOException {
+            path = f.getCanonicalPath();
+            modified = f.lastModified();
+            length = f.length();
+            this.subsampling = subsampling;
+        }
+
+        //
+        // Overrides
+        //
+
+        @Override
+        public boolean equals( Object obj ) {
+            if ( !( obj instanceof Key ) ) return false;
+
+            Key key = ( Key ) obj;
+            return key.path.equals( path ) && ( key.modified == modified ) && ( key.length == length ) && ( key.subsampling == subsampling );
+        }
+
+        @Override
+        public int hashCode() {
+            return ( 31 * ( ( 31 * ( ( 31 * path.hashCode() ) + Long.hashCode( modified ) ) ) + Long.hashCode( length ) ) ) + subsampling;
+        }
+
+    }
+
+    /**
+     * A decoded file.
+     *
+     * @author Austin
+     */
+    static final class Entry {
+
+        //
+        // Fields
+        //
+
+        /** The cache holding the file. */
+        final DecodedFrameCache                       cache;
+
+        /** The decoded frames, which must not be modified. */
+        final BufferedImage[]                         frames;
+
+        /** How long each frame is shown for, in milliseconds. */
+        final int[]                                   delays;
+
+        /** The region which changed going into each frame. */
+        final Rectangle[]                             changes;
+
+        /** The bytes held by the frames' pixels. */
+        final long                                    size;
+
+        /** The ImageViews showing the file, guarded by the cache. */
+        private final List< WeakReference< Object > > holders = new ArrayList<>();
+
+        //
+        // Constructors
+        //
+
+        /**
+         * Creates a new Entry.
+         *
+         * @param cache
+         *            The cache holding the file.
+         * @param frames
+         *            The decoded frames.
+         * @param delays
+         *            How long each frame is shown for, in milliseconds.
+         * @param changes
+         *            The region which changed going into each frame.
+         */
+        public Entry( DecodedFrameCache cache, BufferedImage[] frames, int[] delays, Rectangle[] changes ) {
+            this.cache = cache;
+            this.frames = frames;
+            this.delays = delays;
+            this.changes = changes;
+            size = ScaledFrameCache.sizeOf( frames );
+        }
+
+        //
+        // Actions
+        //
+
+        /**
+         * Marks the file as no longer shown by one ImageView.
+         *
+         * @param holder
+         *            The ImageView which no longer shows the file.
+         * @return If another ImageView still shows the file.
+         */
+        public boolean release( Object holder ) {
+            return cache.release( this, holder );
+        }
+
+        /**
+         * Forgets the ImageViews which were garbage collected without releasing the file.
+         * Called with the cache's lock held.
+         *
+         * @return If an ImageView still shows the file.
+         */
+        private boolean isShown() {
+            Iterator< WeakReference< Object > > it = holders.iterator();
+            while ( it.hasNext() ) {
+                if ( it.next().get() == null ) it.remove();
+            }
+
+            return !holders.isEmpty();
+        }
+
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.github.obsidianarch.swingext;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Keeps each frame of an animation as only the region which changed, exactly as it was
+ * stored in the file, and layers the regions into whole frames as they are shown. Screen
+ * recordings and UI animations usually change a small part of the screen at a time, so
+ * this holds far less than a whole canvas per frame.
+ *
+ * @author Austin
+ */
+public class DeltaFrameSource implements FrameSource {
+
+    //
+    // Fields
+    //
+
+    /** The changed region of each frame. */
+    private final FrameRegion[]   regions;
+
+    /** Layers the regions into whole frames. */
+    private final FrameCompositor compositor;
+
+    /** The index of the frame currently on the compositor's canvas. */
+    private int                   composited = -1;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Reads every frame's region from the file.
+     *
+     * @param f
+     *            The file to read.
+     * @throws IOException
+     *             If the file could not be read.
+     * @throws NoSuchElementException
+     *             If there were no available ImageReaders for the file.
+     */
+    public DeltaFrameSource( File f ) throws IOException, NoSuchElementException {
+        try ( FrameDecoder decoder = new FrameDecoder( f ) ) {
+            List< FrameRegion > regions = new ArrayList<>();
+
+            // read all the regions in the file
+            for ( FrameRegion region = decoder.nextRegion(); region != null; region = decoder.nextRegion() ) {
+                regions.add( region );
+            }
+            if ( regions.isEmpty() ) throw new IOException( "No frames in " + f );
+
+            this.regions = regions.toArray( new FrameRegion[ regions.size() ] );
+            compositor = new FrameCompositor( decoder.getCanvasWidth(), decoder.getCanvasHeight() );
+        }
+    }
+
+    //
+    // Getters
+    //
+
+    /**
+     * @return The number of bytes held by every frame's region.
+     */
+    public long getByteSize() {
+        long bytes = 0;
+
+        for ( FrameRegion region : regions ) {
+            bytes += region.getByteSize();
+        }
+
+        return bytes;
+    }
+
+    //
+    // Overrides
+    //
+
+    @Override
+    public int getFrameCount() {
+        return regions.length;
+    }
+
+    /**
+     * Gets a frame, layering the regions since the last frame onto the canvas. Going
+     * backwards starts again from the first frame. The same image is returned for every
+     * frame, so it is only valid until the next call.
+     */
+    @Override
+    public synchronized BufferedImage getFrame( int index ) {
+        if ( ( index < 0 ) || ( index >= regions.length ) ) return null;
+
+        if ( index < composited ) {
+            compositor.reset(); // start again from the first frame
+            composited = -1;
+        }
+
+        while ( composited < index ) {
+            compositor.apply( regions[ ++composited ] );
+        }
+
+        return compositor.getCanvas();
+    }
+
+    @Override
+    public int getDelay( int index ) {
+        return regions[ index ].delay;
+    }
+
+    /**
+     * The region which changed is the new frame's region, plus the last frame's region if it
+     * was disposed of. The canvas is cleared when the animation loops, so all of the first
+     * frame changes.
+     */
+    @Override
+    public Rectangle getChangedBounds( int index ) {
+        if ( index <= 0 ) return null;
+
+        Rectangle changed = regions[ index ].getBounds();
+
+        FrameRegion previous = regions[ index - 1 ];
+        if ( previous.disposal != FrameRegion.DISPOSE_NONE ) changed = changed.union( previous.getBounds() );
+
+        return changed;
+    }
+
+    @Override
+    public int getWidth() {
+        return compositor.getCanvas().getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return compositor.getCanvas().getHeight();
+    }
+
+    @Override
+    public void close() {
+        // everything is in memory
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.github.obsidianarch.swingext;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Builds whole animation frames by drawing each frame's region over a canvas, disposing of
+ * the previous region first the way the file asks.
+ *
+ * @author Austin
+ */
+final class FrameCompositor {
+
+    //
+    // Fields
+    //
+
+    /** The canvas the regions are drawn on. */
+    private final BufferedImage canvas;
+
+    /** The last region drawn, it is disposed of before the next one is drawn. */
+    private FrameRegion         previous;
+
+    /** The canvas under the last region, if it is to be restored. */
+    private BufferedImage       saved;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Creates a new FrameCompositor with a transparent canvas.
+     *
+     * @param width
+     *            The width of the canvas.
+     * @param height
+     *            The height of the canvas.
+     */
+    public FrameCompositor( int width, int height ) {
+        canvas = new BufferedImage( width, height, BufferedImage.TYPE_INT_ARGB );
+    }
+
+    //
+    // Actions
+    //
+
+    /**
+     * Draws the next region over the canvas.
+     *
+     * @param region
+     *            The next frame's region.
+     * @return The canvas, which is reused by the next call.
+     */
+    public BufferedImage apply( FrameRegion region ) {
+        Graphics2D grafix = canvas.createGraphics();
+        {
+            // get rid of the last frame's region the way it asked
+            if ( previous != null ) {
+                Rectangle bounds = previous.getBounds();
+
+                if ( previous.disposal == FrameRegion.DISPOSE_BACKGROUND ) {
+                    grafix.setComposite( AlphaComposite.Clear );
+                    grafix.fill( bounds );
+                }
+                else if ( ( previous.disposal == FrameRegion.DISPOSE_PREVIOUS ) && ( saved != null ) ) {
+                    grafix.setComposite( AlphaComposite.Src );
+                    grafix.drawImage( saved, bounds.x, bounds.y, null );
+                }
+
+                grafix.setComposite( AlphaComposite.SrcOver );
+            }
+
+            // keep what's under this region if it is to be restored
+            saved = null;
+            if ( region.disposal == FrameRegion.DISPOSE_PREVIOUS ) {
+                Rectangle bounds = region.getBounds().intersection( new Rectangle( canvas.getWidth(), canvas.getHeight() ) );
+                if ( !bounds.isEmpty() ) saved = copy( canvas.getSubimage( bounds.x, bounds.y, bounds.width, bounds.height ) );
+            }
+
+            grafix.drawImage( region.image, region.x, region.y, null );
+        }
+        grafix.dispose();
+
+        previous = region;
+        return canvas;
+    }
+
+    /**
+     * Clears the canvas, ready for the first frame again.
+     */
+    public void reset() {
+        Graphics2D grafix = canvas.createGraphics();
+        {
+            grafix.setComposite( AlphaComposite.Clear );
+            grafix.fillRect( 0, 0, canvas.getWidth(), canvas.getHeight() );
+        }
+        grafix.dispose();
+
+        previous = null;
+        saved = null;
+    }
+
+    /**
+     * Copies an image.
+     *
+     * @param bi
+     *            The image to copy.
+     * @return A copy of the image which shares nothing with it.
+     */
+    public static BufferedImage copy( BufferedImage bi ) {
+        BufferedImage copy = new BufferedImage( bi.getWidth(), bi.getHeight(), BufferedImage.TYPE_INT_ARGB );
+        {
+            Graphics2D grafix = copy.createGraphics();
+            grafix.setComposite( AlphaComposite.Src );
+            grafix.drawImage( bi, 0, 0, null );
+            grafix.dispose();
+        }
+        return copy;
+    }
+
+    //
+    // Getters
+    //
+
+    /**
+     * @return The canvas the regions are drawn on.
+     */
+    public BufferedImage getCanvas() {
+        return canvas;
+    }
+
+}
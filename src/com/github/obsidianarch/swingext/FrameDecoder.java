@@ -0,0 +1,254 @@
+package com.github.obsidianarch.swingext;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.event.IIOReadUpdateListener;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Decodes the frames of an image file one after another, layering each frame over the ones
+ * before it at the position the file gives. Frames are decoded on demand, so the file
+ * doesn't have to be scanned before the first frame is available.
+ *
+ * @author Austin
+ */
+final class FrameDecoder implements Closeable {
+
+    //
+    // Fields
+    //
+
+    /** The stream the image is read from. */
+    private final ImageInputStream stream;
+
+    /** Reads the frames from the stream. */
+    private final ImageReader      reader;
+
+    /** The index of the next frame to decode. */
+    private int                    index;
+
+    /** Layers each frame over the ones before it, created with the first frame. */
+    private FrameCompositor        compositor;
+
+    /** How long the last frame decoded is shown for, in milliseconds. */
+    private int                    delay;
+
+    /** Only every {@code subsampling}th pixel across and down is decoded. */
+    private int                    subsampling = 1;
+
+    /** How long the last frame's pixels took to decode, in nanoseconds. */
+    private long                   decodeTime;
+
+    /** How long the last frame took to layer over the frames before it, in nanoseconds. */
+    private long                   compositeTime;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Opens the file for decoding.
+     *
+     * @param f
+     *            The file to read.
+     * @throws IOException
+     *             If the file could not be opened.
+     * @throws NoSuchElementException
+     *             If there were no available ImageReaders for the file.
+     */
+    public FrameDecoder( File f ) throws IOException, NoSuchElementException {
+        stream = ImageIO.createImageInputStream( f );
+        if ( stream == null ) throw new IOException( "Could not open " + f );
+
+        try {
+            Iterator< ImageReader > readers = ImageIO.getImageReaders( stream );
+
+            reader = readers.next(); // get the image reader
+            reader.setInput( stream );
+        }
+        catch ( NoSuchElementException e ) {
+            stream.close();
+            throw e;
+        }
+    }
+
+    //
+    // Actions
+    //
+
+    /**
+     * Decodes the next frame's region, without layering it over the frames before it.
+     *
+     * @return The next frame's region, or {@code null} if every frame has been decoded.
+     * @throws IOException
+     *             If the frame could not be read.
+     */
+    public FrameRegion nextRegion() throws IOException {
+        FrameRegion region;
+        try {
+            region = FrameRegion.read( reader, index, subsampling );
+        }
+        catch ( IndexOutOfBoundsException e ) {
+            return null; // there are no more frames
+        }
+
+        index++;
+        return region;
+    }
+
+    /**
+     * Decodes the next frame.
+     *
+     * @return The next frame, or {@code null} if every frame has been decoded.
+     * @throws IOException
+     *             If the frame could not be read.
+     */
+    public BufferedImage next() throws IOException {
+        long start = System.nanoTime();
+        FrameRegion region = nextRegion();
+        if ( region == null ) return null;
+
+        delay = region.delay;
+
+        long decoded = System.nanoTime();
+        decodeTime = decoded - start;
+
+        // gifs compress by only storing the pixels which changed, so we have to add the others back in by layering this frame over the previous ones
+        if ( compositor == null ) compositor = new FrameCompositor( getCanvasWidth(), getCanvasHeight() );
+        BufferedImage frame = FrameCompositor.copy( compositor.apply( region ) );
+
+        compositeTime = System.nanoTime() - decoded;
+        return frame;
+    }
+
+    /**
+     * Asks the reader to stop decoding the current frame as soon as it can. The frame being
+     * decoded is returned unfinished and nothing after it is decoded.
+     */
+    public void abort() {
+        reader.abort();
+    }
+
+    /**
+     * Goes back to the first frame, the next call to {@link #next()} decodes it again.
+     */
+    public void rewind() {
+        index = 0;
+        if ( compositor != null ) compositor.reset();
+    }
+
+    //
+    // Setters
+    //
+
+    /**
+     * Decodes only every {@code period}th pixel across and down of the frames after this,
+     * which is much faster and smaller for images that are shown zoomed out. The canvas is
+     * shrunk to match.
+     *
+     * @param period
+     *            The distance between the decoded pixels, 1 decodes at full resolution.
+     * @throws IllegalArgumentException
+     *             If {@code period} was not positive.
+     */
+    public void setSubsampling( int period ) throws IllegalArgumentException {
+        if ( period < 1 ) throw new IllegalArgumentException( "period must be positive!" );
+
+        subsampling = period;
+    }
+
+    /**
+     * Adds a listener which is told about the pixels of each frame as they are decoded,
+     * including each pass over interlaced and progressive images.
+     *
+     * @param listener
+     *            The listener.
+     */
+    public void addReadUpdateListener( IIOReadUpdateListener listener ) {
+        reader.addIIOReadUpdateListener( listener );
+    }
+
+    //
+    // Getters
+    //
+
+    /**
+     * @return How long the last frame returned by {@link #next()} is shown for, in
+     *         milliseconds.
+     */
+    public int getDelay() {
+        return delay;
+    }
+
+    /**
+     * @return How long the pixels of the last frame returned by {@link #next()} took to
+     *         decode, in nanoseconds.
+     */
+    public long getDecodeTime() {
+        return decodeTime;
+    }
+
+    /**
+     * @return How long the last frame returned by {@link #next()} took to layer over the
+     *         frames before it, in nanoseconds.
+     */
+    public long getCompositeTime() {
+        return compositeTime;
+    }
+
+    /**
+     * @return The width of the canvas the frames are layered on, after subsampling.
+     * @throws IOException
+     *             If the file's header could not be read.
+     */
+    public int getCanvasWidth() throws IOException {
+        IIOMetadataNode screen = getLogicalScreen();
+        int width = ( screen != null ) ? FrameRegion.parse( screen.getAttribute( "logicalScreenWidth" ), reader.getWidth( 0 ) ) : reader.getWidth( 0 );
+        return ( width + subsampling - 1 ) / subsampling;
+    }
+
+    /**
+     * @return The height of the canvas the frames are layered on, after subsampling.
+     * @throws IOException
+     *             If the file's header could not be read.
+     */
+    public int getCanvasHeight() throws IOException {
+        IIOMetadataNode screen = getLogicalScreen();
+        int height = ( screen != null ) ? FrameRegion.parse( screen.getAttribute( "logicalScreenHeight" ), reader.getHeight( 0 ) ) : reader.getHeight( 0 );
+        return ( height + subsampling - 1 ) / subsampling;
+    }
+
+    /**
+     * @return The GIF logical screen descriptor, or {@code null} if the file doesn't have
+     *         one.
+     * @throws IOException
+     *             If the file's header could not be read.
+     */
+    private IIOMetadataNode getLogicalScreen() throws IOException {
+        IIOMetadata metadata = reader.getStreamMetadata();
+        if ( ( metadata == null ) || ( metadata.getNativeMetadataFormatName() == null ) ) return null;
+
+        IIOMetadataNode root = ( IIOMetadataNode ) metadata.getAsTree( metadata.getNativeMetadataFormatName() );
+        return FrameRegion.getChild( root, "LogicalScreenDescriptor" );
+    }
+
+    //
+    // Overrides
+    //
+
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        stream.close();
+    }
+
+}
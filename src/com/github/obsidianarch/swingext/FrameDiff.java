@@ -0,0 +1,114 @@
+package com.github.obsidianarch.swingext;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Finds the region which changed between two frames, so only that region has to be
+ * repainted when the animation moves from one to the other.
+ *
+ * @author Austin
+ */
+final class FrameDiff {
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Nothing to construct, everything is static.
+     */
+    private FrameDiff() {
+    }
+
+    //
+    // Actions
+    //
+
+    /**
+     * Finds the changes between each frame and the one before it.
+     *
+     * @param frames
+     *            The frames of an animation.
+     * @return The region which changed going into each frame, the first frame is compared
+     *         with the last because the animation loops.
+     */
+    public static Rectangle[] changedBounds( BufferedImage[] frames ) {
+        Rectangle[] changes = new Rectangle[ frames.length ];
+
+        for ( int i = 0; i < frames.length; i++ ) {
+            changes[ i ] = changedBounds( frames[ ( i + frames.length - 1 ) % frames.length ], frames[ i ] );
+        }
+
+        return changes;
+    }
+
+    /**
+     * Finds the smallest rectangle containing every pixel which differs between two frames.
+     *
+     * @param a
+     *            The first frame.
+     * @param b
+     *            The second frame.
+     * @return The bounds of the changed pixels, which is empty if the frames are identical and
+     *         the whole frame if they aren't the same size.
+     */
+    public static Rectangle changedBounds( BufferedImage a, BufferedImage b ) {
+        int width = a.getWidth();
+        int height = a.getHeight();
+        if ( ( width != b.getWidth() ) || ( height != b.getHeight() ) ) return new Rectangle( Math.max( width, b.getWidth() ), Math.max( height, b.getHeight() ) );
+
+        // frames of the same packed int type are compared as they're stored, anything else is converted to ARGB
+        boolean packed = ( a.getType() == b.getType() ) && isPackedInt( a );
+
+        int[] lineA = new int[ width ];
+        int[] lineB = new int[ width ];
+
+        int minX = width, minY = height, maxX = -1, maxY = -1;
+        for ( int y = 0; y < height; y++ ) {
+            if ( packed ) {
+                a.getRaster().getDataElements( 0, y, width, 1, lineA );
+                b.getRaster().getDataElements( 0, y, width, 1, lineB );
+            }
+            else {
+                a.getRGB( 0, y, width, 1, lineA, 0, width );
+                b.getRGB( 0, y, width, 1, lineB, 0, width );
+            }
+
+            // find the first and last changed pixels in this row
+            int left = 0;
+            while ( ( left < width ) && ( lineA[ left ] == lineB[ left ] ) ) {
+                left++;
+            }
+            if ( left == width ) continue; // the row is the same
+
+            int right = width - 1;
+            while ( lineA[ right ] == lineB[ right ] ) {
+                right--;
+            }
+
+            minX = Math.min( minX, left );
+            maxX = Math.max( maxX, right );
+            minY = Math.min( minY, y );
+            maxY = y;
+        }
+
+        if ( maxY < 0 ) return new Rectangle(); // the frames are identical
+        return new Rectangle( minX, minY, ( maxX - minX ) + 1, ( maxY - minY ) + 1 );
+    }
+
+    //
+    // Getters
+    //
+
+    /**
+     * @param bi
+     *            The image.
+     * @return If the image stores each pixel as a single packed int.
+     */
+    private static boolean isPackedInt( BufferedImage bi ) {
+        int type = bi.getType();
+        return ( type == BufferedImage.TYPE_INT_ARGB ) || ( type == BufferedImage.TYPE_INT_RGB ) || ( type == BufferedImage.TYPE_INT_ARGB_PRE ) || ( type == BufferedImage.TYPE_INT_BGR );
+    }
+
+}
@@ -0,0 +1,482 @@
+package com.github.obsidianarch.swingext;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageReader;
+import javax.imageio.event.IIOReadUpdateListener;
+import javax.swing.SwingUtilities;
+
+/**
+ * Reads an image file for an ImageView, either on the calling thread or in the background.
+ * In the background, the first frame is shown at whatever resolution it has been decoded
+ * to so far, pass by pass for interlaced and progressive images and row by row for the
+ * rest, and the finished frames replace it once they are all decoded. Frames which are held
+ * whole can be decoded at a lower resolution for images which are shown zoomed out.
+ *
+ * @author Austin
+ */
+final class FrameLoader implements Callable< Void > {
+
+    //
+    // Constants
+    //
+
+    /** The least time between two previews, in milliseconds. */
+    private static final long            PREVIEW_INTERVAL = 100;
+
+    /** The most pixels in a preview, larger frames are previewed at a lower resolution. */
+    private static final long            PREVIEW_PIXELS   = 1024 * 1024;
+
+    /** Runs the background loads, shared by every ImageView. */
+    private static final ExecutorService EXECUTOR         = Executors.newCachedThreadPool( new ThreadFactory() {
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread thread = new Thread( r );
+            thread.setName( "Image Loader" );
+            thread.setDaemon( true );
+            return thread;
+        }
+
+    } );
+
+    //
+    // Fields
+    //
+
+    /** The ImageView the file is loaded into. */
+    private final ImageView                  view;
+
+    /** The file to read. */
+    private final File                       file;
+
+    /** How the frames are stored, one of the ImageView's storage constants. */
+    private final int                        storage;
+
+    /** Only every {@code subsampling}th pixel across and down is decoded. */
+    private final int                        subsampling;
+
+    /** If the first frame is previewed while it is decoded. */
+    private final boolean                    previews;
+
+    /** The cache of decoded files, may be {@code null}. */
+    private final DecodedFrameCache          cache;
+
+    /** The decoded file taken from the cache, released if the load is cancelled. */
+    private volatile DecodedFrameCache.Entry entry;
+
+    /** The decoder reading the frames, {@code null} when there isn't one. */
+    private volatile FrameDecoder            decoder;
+
+    /** If the load has been cancelled. */
+    private volatile boolean                 aborted;
+
+    /** The frame or tile source opened by the load, {@code null} if the frames are held whole. */
+    private Closeable                        source;
+
+    /** If the first frame has been decoded, it is only previewed until then. */
+    private boolean                          firstDecoded;
+
+    /** The time the last preview was shown, in nanoseconds. */
+    private long                             lastPreview;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Creates a new FrameLoader.
+     *
+     * @param view
+     *            The ImageView the file is loaded into.
+     * @param file
+     *            The file to read.
+     * @param storage
+     *            How the frames are stored, one of the ImageView's storage constants.
+     * @param subsampling
+     *            Only every {@code subsampling}th pixel across and down of frames which are
+     *            held whole is decoded, 1 decodes them at full resolution.
+     * @param previews
+     *            If the first frame should be previewed while it is decoded.
+     */
+    public FrameLoader( ImageView view, File file, int storage, int subsampling, boolean previews ) {
+        this.view = view;
+        this.file = file;
+        this.storage = storage;
+        this.subsampling = subsampling;
+        this.previews = previews;
+        cache = view.getDecodedFrameCache();
+    }
+
+    //
+    // Actions
+    //
+
+    /**
+     * Starts loading the file in the background.
+     *
+     * @param view
+     *            The ImageView the file is loaded into.
+     * @param f
+     *            The file to read.
+     * @param storage
+     *            How the frames are stored, one of the ImageView's storage constants.
+     * @param subsampling
+     *            Only every {@code subsampling}th pixel across and down of frames which are
+     *            held whole is decoded, 1 decodes them at full resolution.
+     * @param previews
+     *            If the first frame should be previewed while it is decoded.
+     * @return The load, cancelling it stops decoding as soon as possible.
+     */
+    public static Future< Void > start( ImageView view, File f, int storage, int subsampling, boolean previews ) {
+        final FrameLoader loader = new FrameLoader( view, f, storage, subsampling, previews );
+
+        FutureTask< Void > task = new FutureTask< Void >( loader ) {
+
+            @Override
+            public boolean cancel( boolean mayInterruptIfRunning ) {
+                loader.abort(); // even once the frames are decoded, they may not be shown yet
+                return super.cancel( mayInterruptIfRunning );
+            }
+
+        };
+
+        EXECUTOR.execute( task );
+        return task;
+    }
+
+    /**
+     * Works out the region which changed going into each frame in the background, and hands
+     * them to the ImageView on the event dispatch thread, for frames which weren't loaded from
+     * a file.
+     *
+     * @param view
+     *            The ImageView showing the frames.
+     * @param frames
+     *            The frames.
+     */
+    public static void diff( final ImageView view, final BufferedImage[] frames ) {
+        EXECUTOR.execute( new Runnable() {
+
+            @Override
+            public void run() {
+                final Rectangle[] changes = FrameDiff.changedBounds( frames );
+
+                SwingUtilities.invokeLater( new Runnable() {
+
+                    @Override
+                    public void run() {
+                        view.applyChanges( frames, changes );
+                    }
+
+                } );
+            }
+
+        } );
+    }
+
+    /**
+     * Reads the file.
+     *
+     * @return Hands the frames to the ImageView, must be run on the event dispatch thread.
+     * @throws IOException
+     *             If the file could not be read.
+     * @throws NoSuchElementException
+     *             If there were no available ImageReaders for the file.
+     * @throws CancellationException
+     *             If the load was cancelled.
+     */
+    public Runnable load() throws IOException, NoSuchElementException, CancellationException {
+        if ( storage == ImageView.STORAGE_TILED ) {
+            final TiledImageSource source = new TiledImageSource( file );
+            this.source = source;
+
+            return new Runnable() {
+
+                @Override
+                public void run() {
+                    view.finishLoading();
+                    view.applyTiledSource( source );
+                }
+
+            };
+        }
+        else if ( storage != ImageView.STORAGE_FRAMES ) {
+            final FrameSource source = openSource();
+            this.source = source;
+
+            return new Runnable() {
+
+                @Override
+                public void run() {
+                    view.finishLoading();
+                    view.applyFrameSource( source );
+                }
+
+            };
+        }
+
+        // another ImageView may have decoded this file already
+        DecodedFrameCache.Key key = ( cache != null ) ? new DecodedFrameCache.Key( file, subsampling ) : null;
+        if ( key != null ) {
+            entry = cache.acquire( key, view );
+            if ( entry != null ) return apply( entry.frames, entry.delays, entry.changes, entry );
+        }
+
+        try ( FrameDecoder decoder = new FrameDecoder( file ) ) {
+            this.decoder = decoder;
+            decoder.setSubsampling( subsampling );
+            if ( previews ) decoder.addReadUpdateListener( new PreviewListener() );
+
+            List< BufferedImage > frames = new ArrayList<>(); // all the frames in this image
+            List< Integer > delays = new ArrayList<>(); // how long each frame is shown for
+
+            // read all the images in the file
+            for ( BufferedImage frame = decoder.next(); frame != null; frame = decoder.next() ) {
+                if ( aborted ) throw new CancellationException(); // the frame may not be finished
+
+                frames.add( frame );
+                delays.add( decoder.getDelay() );
+                firstDecoded = true;
+
+                view.fireFrameDecoded( frames.size() - 1, decoder.getDecodeTime(), decoder.getCompositeTime() );
+            }
+            if ( aborted ) throw new CancellationException();
+            if ( frames.isEmpty() ) throw new IOException( "No frames in " + file );
+
+            final BufferedImage[] frameArray = frames.toArray( new BufferedImage[ frames.size() ] );
+            final int[] frameDelays = new int[ delays.size() ];
+            for ( int i = 0; i < frameDelays.length; i++ ) {
+                frameDelays[ i ] = delays.get( i );
+            }
+
+            final Rectangle[] changes = FrameDiff.changedBounds( frameArray ); // work out what to repaint while we're off the event dispatch thread
+
+            if ( key != null ) {
+                entry = cache.add( key, frameArray, frameDelays, changes, view );
+                return apply( entry.frames, entry.delays, entry.changes, entry );
+            }
+
+            return apply( frameArray, frameDelays, changes, null );
+        }
+        finally {
+            this.decoder = null;
+        }
+    }
+
+    /**
+     * Creates the update which hands decoded frames to the ImageView.
+     *
+     * @param frames
+     *            The frames.
+     * @param delays
+     *            How long each frame is shown for, in milliseconds.
+     * @param changes
+     *            The region which changed going into each frame.
+     * @param shared
+     *            The decoded file the frames are shared from, may be {@code null}.
+     * @return The update, must be run on the event dispatch thread.
+     */
+    private Runnable apply( final BufferedImage[] frames, final int[] delays, final Rectangle[] changes, final DecodedFrameCache.Entry shared ) {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                entry = null; // the ImageView releases it from now on
+                view.finishLoading();
+                view.applyFrames( frames, delays, changes, 1.0 / subsampling, ( subsampling > 1 ) ? file : null, shared );
+            }
+
+        };
+    }
+
+    /**
+     * Opens the frame source for storages which don't hold whole frames.
+     *
+     * @return The frame source.
+     * @throws IOException
+     *             If the file could not be read.
+     * @throws NoSuchElementException
+     *             If there were no available ImageReaders for the file.
+     */
+    private FrameSource openSource() throws IOException, NoSuchElementException {
+        switch ( storage ) {
+            case ImageView.STORAGE_STREAMING:
+                return new StreamingFrameSource( file );
+
+            case ImageView.STORAGE_DELTA:
+                return new DeltaFrameSource( file );
+
+            case ImageView.STORAGE_MAPPED:
+                return new MappedFrameSource( file );
+
+            default:
+                throw new IllegalArgumentException( "unknown frame storage: " + storage );
+        }
+    }
+
+    /**
+     * Runs an update on the event dispatch thread, unless the load is cancelled before it
+     * gets there, in which case the source it opened is closed instead of being shown.
+     *
+     * @param update
+     *            The update.
+     */
+    private void publish( final Runnable update ) {
+        SwingUtilities.invokeLater( new Runnable() {
+
+            @Override
+            public void run() {
+                if ( !aborted ) {
+                    update.run();
+                }
+                else if ( source != null ) {
+                    closeSource();
+                }
+                else if ( entry != null ) {
+                    entry.release( view ); // the ImageView never took it
+                    entry = null;
+                }
+            }
+
+        } );
+    }
+
+    /**
+     * Closes the source opened by a load which was cancelled.
+     */
+    private void closeSource() {
+        try {
+            source.close();
+        }
+        catch ( IOException e ) {
+            e.printStackTrace();
+        }
+
+        source = null;
+    }
+
+    /**
+     * Cancels the load, the frames decoded so far are thrown away.
+     */
+    public void abort() {
+        aborted = true;
+
+        FrameDecoder decoder = this.decoder;
+        if ( decoder != null ) decoder.abort();
+    }
+
+    //
+    // Overrides
+    //
+
+    @Override
+    public Void call() throws IOException, NoSuchElementException, CancellationException {
+        publish( load() );
+        return null;
+    }
+
+    //
+    // Nested Classes
+    //
+
+    /**
+     * Shows the first frame while it is decoded.
+     *
+     * @author Austin
+     */
+    private class PreviewListener implements IIOReadUpdateListener {
+
+        //
+        // Actions
+        //
+
+        /**
+         * Shows a copy of the frame as it is now, if the first frame is still being decoded
+         * and the last preview wasn't too recent.
+         *
+         * @param reader
+         *            The reader decoding the frame.
+         * @param image
+         *            The frame being decoded.
+         * @param force
+         *            If the preview should be shown no matter how recent the last one was.
+         */
+        private void preview( ImageReader reader, BufferedImage image, boolean force ) {
+            if ( aborted || firstDecoded ) return;
+
+            long now = System.nanoTime();
+            if ( !force && ( ( now - lastPreview ) < TimeUnit.MILLISECONDS.toNanos( PREVIEW_INTERVAL ) ) ) return;
+            lastPreview = now;
+
+            // the decoder keeps drawing into the image, so the preview has to be a copy
+            final double scale = Math.min( 1, Math.sqrt( ( double ) PREVIEW_PIXELS / ( ( long ) image.getWidth() * image.getHeight() ) ) );
+            final BufferedImage copy = new BufferedImage( Math.max( 1, ( int ) ( image.getWidth() * scale ) ), Math.max( 1, ( int ) ( image.getHeight() * scale ) ), BufferedImage.TYPE_INT_ARGB );
+            {
+                Graphics2D grafix = copy.createGraphics();
+                grafix.setComposite( AlphaComposite.Src );
+                grafix.drawImage( image, 0, 0, copy.getWidth(), copy.getHeight(), null );
+                grafix.dispose();
+            }
+
+            final double copyScale = ( double ) copy.getWidth() / image.getWidth() / subsampling;
+            publish( new Runnable() {
+
+                @Override
+                public void run() {
+                    view.applyFrames( new BufferedImage[ ] { copy }, new int[ ] { FrameRegion.DEFAULT_DELAY }, null, copyScale, null, null );
+                }
+
+            } );
+        }
+
+        //
+        // Overrides
+        //
+
+        @Override
+        public void passStarted( ImageReader source, BufferedImage theImage, int pass, int minPass, int maxPass, int minX, int minY, int periodX, int periodY, int[] bands ) {
+        }
+
+        @Override
+        public void imageUpdate( ImageReader source, BufferedImage theImage, int minX, int minY, int width, int height, int periodX, int periodY, int[] bands ) {
+            preview( source, theImage, false );
+        }
+
+        @Override
+        public void passComplete( ImageReader source, BufferedImage theImage ) {
+            preview( source, theImage, true );
+        }
+
+        @Override
+        public void thumbnailPassStarted( ImageReader source, BufferedImage theThumbnail, int pass, int minPass, int maxPass, int minX, int minY, int periodX, int periodY, int[] bands ) {
+        }
+
+        @Override
+        public void thumbnailUpdate( ImageReader source, BufferedImage theThumbnail, int minX, int minY, int width, int height, int periodX, int periodY, int[] bands ) {
+        }
+
+        @Override
+        public void thumbnailPassComplete( ImageReader source, BufferedImage theThumbnail ) {
+        }
+
+    }
+
+}
@@ -0,0 +1,205 @@
+package com.github.obsidianarch.swingext;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+
+/**
+ * The part of an animation frame that changed, as it was stored in the file: the image,
+ * where it goes on the canvas, and what happens to it once the next frame is shown.
+ *
+ * @author Austin
+ */
+final class FrameRegion {
+
+    //
+    // Constants
+    //
+
+    /** The region is left in place under the next frame. */
+    public static final int DISPOSE_NONE       = 0;
+
+    /** The region is cleared to transparent before the next frame is drawn. */
+    public static final int DISPOSE_BACKGROUND = 1;
+
+    /** The canvas under the region is restored before the next frame is drawn. */
+    public static final int DISPOSE_PREVIOUS   = 2;
+
+    /**
+     * The delay used when a frame doesn't have one, in milliseconds. Like web browsers, this
+     * is also used for delays of 10 milliseconds or less, which GIF encoders write to mean
+     * "as fast as possible".
+     */
+    public static final int DEFAULT_DELAY      = 100;
+
+    //
+    // Fields
+    //
+
+    /** The changed pixels. */
+    public final BufferedImage image;
+
+    /** The x coordinate of the region on the canvas. */
+    public final int           x;
+
+    /** The y coordinate of the region on the canvas. */
+    public final int           y;
+
+    /** What happens to the region once the next frame is shown. */
+    public final int           disposal;
+
+    /** How long the frame is shown for, in milliseconds. */
+    public final int           delay;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Creates a new FrameRegion.
+     *
+     * @param image
+     *            The changed pixels.
+     * @param x
+     *            The x coordinate of the region on the canvas.
+     * @param y
+     *            The y coordinate of the region on the canvas.
+     * @param disposal
+     *            What happens to the region once the next frame is shown.
+     * @param delay
+     *            How long the frame is shown for, in milliseconds.
+     */
+    public FrameRegion( BufferedImage image, int x, int y, int disposal, int delay ) {
+        this.image = image;
+        this.x = x;
+        this.y = y;
+        this.disposal = disposal;
+        this.delay = delay;
+    }
+
+    //
+    // Actions
+    //
+
+    /**
+     * Reads a frame and its position, disposal method and delay. Formats without that
+     * metadata are drawn at the top-left corner, never disposed, and shown for the
+     * {@link #DEFAULT_DELAY}.
+     *
+     * @param reader
+     *            The reader to read the frame with.
+     * @param index
+     *            The index of the frame.
+     * @param subsampling
+     *            Only every {@code subsampling}th pixel across and down is decoded, 1 decodes
+     *            the frame at full resolution.
+     * @return The frame's region.
+     * @throws IOException
+     *             If the frame could not be read.
+     * @throws IndexOutOfBoundsException
+     *             If there is no frame at {@code index}.
+     */
+    public static FrameRegion read( ImageReader reader, int index, int subsampling ) throws IOException, IndexOutOfBoundsException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling( subsampling, subsampling, 0, 0 );
+
+        BufferedImage image = reader.read( index, param ); // read the image from the file
+
+        int x = 0;
+        int y = 0;
+        int disposal = DISPOSE_NONE;
+        int delay = DEFAULT_DELAY;
+
+        IIOMetadata metadata = reader.getImageMetadata( index );
+        if ( ( metadata != null ) && ( metadata.getNativeMetadataFormatName() != null ) ) {
+            IIOMetadataNode root = ( IIOMetadataNode ) metadata.getAsTree( metadata.getNativeMetadataFormatName() );
+
+            IIOMetadataNode descriptor = getChild( root, "ImageDescriptor" );
+            if ( descriptor != null ) {
+                x = parse( descriptor.getAttribute( "imageLeftPosition" ), 0 ) / subsampling;
+                y = parse( descriptor.getAttribute( "imageTopPosition" ), 0 ) / subsampling;
+            }
+
+            IIOMetadataNode gce = getChild( root, "GraphicControlExtension" );
+            if ( gce != null ) {
+                switch ( gce.getAttribute( "disposalMethod" ) ) {
+                    case "restoreToBackgroundColor":
+                        disposal = DISPOSE_BACKGROUND;
+                        break;
+
+                    case "restoreToPrevious":
+                        disposal = DISPOSE_PREVIOUS;
+                        break;
+
+                    default:
+                        disposal = DISPOSE_NONE;
+                        break;
+                }
+
+                delay = parse( gce.getAttribute( "delayTime" ), 0 ) * 10; // gif delay times are measured in centiseconds, not milliseconds
+                if ( delay <= 10 ) delay = DEFAULT_DELAY;
+            }
+        }
+
+        return new FrameRegion( image, x, y, disposal, delay );
+    }
+
+    /**
+     * Finds the first child node with the given name.
+     *
+     * @param root
+     *            The node to search.
+     * @param name
+     *            The name of the child node.
+     * @return The child node, or {@code null} if there is none.
+     */
+    static IIOMetadataNode getChild( IIOMetadataNode root, String name ) {
+        for ( int i = 0; i < root.getLength(); i++ ) {
+            if ( root.item( i ).getNodeName().equalsIgnoreCase( name ) ) return ( IIOMetadataNode ) root.item( i );
+        }
+
+        return null;
+    }
+
+    /**
+     * Parses a metadata attribute.
+     *
+     * @param value
+     *            The attribute's value.
+     * @param fallback
+     *            The value used if the attribute isn't a number.
+     * @return The attribute's value as a number.
+     */
+    static int parse( String value, int fallback ) {
+        try {
+            return Integer.parseInt( value );
+        }
+        catch ( NumberFormatException e ) {
+            return fallback;
+        }
+    }
+
+    //
+    // Getters
+    //
+
+    /**
+     * @return The area of the canvas covered by the region.
+     */
+    public Rectangle getBounds() {
+        return new Rectangle( x, y, image.getWidth(), image.getHeight() );
+    }
+
+    /**
+     * @return The number of bytes held by the region's pixels.
+     */
+    public long getByteSize() {
+        return ScaledFrameCache.sizeOf( new BufferedImage[ ] { image } );
+    }
+
+}
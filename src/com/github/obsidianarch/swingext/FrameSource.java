@@ -0,0 +1,61 @@
+package com.github.obsidianarch.swingext;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+
+/**
+ * Supplies the frames of an animation to an ImageView one at a time, for frames which are
+ * not all held in memory at once.
+ *
+ * @author Austin
+ */
+public interface FrameSource extends Closeable {
+
+    /**
+     * @return The number of frames, or {@code -1} if it isn't known yet.
+     */
+    int getFrameCount();
+
+    /**
+     * Gets a frame. The ImageView asks for its frames in order, wrapping back to the first
+     * frame after the last.
+     *
+     * @param index
+     *            The index of the frame.
+     * @return The frame, or {@code null} if it isn't available yet.
+     */
+    BufferedImage getFrame( int index );
+
+    /**
+     * @param index
+     *            The index of the frame.
+     * @return How long the frame is shown for, in milliseconds.
+     */
+    int getDelay( int index );
+
+    /**
+     * Gets the region which changed going into a frame from the frame before it, so only that
+     * region is repainted. Sources which don't know return {@code null}, and the whole frame
+     * is repainted.
+     *
+     * @param index
+     *            The index of the frame.
+     * @return The region which changed, empty if nothing did, or {@code null} if it isn't
+     *         known.
+     */
+    default Rectangle getChangedBounds( int index ) {
+        return null;
+    }
+
+    /**
+     * @return The width of every frame.
+     */
+    int getWidth();
+
+    /**
+     * @return The height of every frame.
+     */
+    int getHeight();
+
+}
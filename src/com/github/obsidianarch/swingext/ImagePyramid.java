@@ -0,0 +1,93 @@
+package com.github.obsidianarch.swingext;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A mipmap pyramid for a single frame, each level is half the size of the one before it.
+ * Levels are only built the first time they are needed.
+ *
+ * @author Austin
+ */
+final class ImagePyramid {
+
+    //
+    // Fields
+    //
+
+    /** The levels built so far, level 0 is the full size frame. */
+    private final List< BufferedImage > levels = new ArrayList<>();
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Creates a new ImagePyramid for the frame, no levels are built until they are needed.
+     *
+     * @param frame
+     *            The full size frame.
+     */
+    public ImagePyramid( BufferedImage frame ) {
+        levels.add( frame );
+    }
+
+    //
+    // Actions
+    //
+
+    /**
+     * Halves the image, with bilinear interpolation at exactly half the size every output
+     * pixel is the average of a 2x2 block of input pixels.
+     *
+     * @param bi
+     *            The image to halve.
+     * @return The image at half the size.
+     */
+    private static BufferedImage halve( BufferedImage bi ) {
+        int outWidth = Math.max( 1, bi.getWidth() / 2 );
+        int outHeight = Math.max( 1, bi.getHeight() / 2 );
+
+        BufferedImage output = CompatibleImages.createScaled( null, bi, outWidth, outHeight ); // keeps the frame's alpha
+        Graphics2D grafix = output.createGraphics();
+        {
+            grafix.setRenderingHint( RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR );
+            grafix.drawImage( bi, 0, 0, outWidth, outHeight, null );
+        }
+        grafix.dispose();
+
+        return output;
+    }
+
+    //
+    // Getters
+    //
+
+    /**
+     * Gets the smallest level that is still at least as large as the frame at the zoom level,
+     * building any missing levels on the way. Scaling from this level never shrinks by more
+     * than half, which keeps bicubic interpolation from aliasing.
+     *
+     * @param zoom
+     *            The zoom level the frame will be scaled to.
+     * @return The level to scale from.
+     */
+    public synchronized BufferedImage getLevel( double zoom ) {
+        BufferedImage level = levels.get( 0 );
+        double scale = 1.0;
+
+        for ( int i = 1; ( scale / 2 ) >= zoom; i++ ) {
+            if ( ( level.getWidth() == 1 ) && ( level.getHeight() == 1 ) ) break; // can't get any smaller
+
+            if ( i == levels.size() ) levels.add( halve( level ) );
+            level = levels.get( i );
+            scale /= 2;
+        }
+
+        return level;
+    }
+
+}
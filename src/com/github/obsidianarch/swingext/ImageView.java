@@ -1,26 +1,30 @@
 package com.github.obsidianarch.swingext;
 
+import java.awt.AlphaComposite;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
-import javax.imageio.ImageIO;
-import javax.imageio.ImageReader;
-import javax.imageio.metadata.IIOMetadata;
-import javax.imageio.metadata.IIOMetadataNode;
-import javax.imageio.stream.ImageInputStream;
 import javax.swing.JComponent;
 import javax.swing.JSlider;
-import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
@@ -29,32 +33,171 @@ import javax.swing.event.ChangeListener;
  * 
  * @author Austin
  */
-public class ImageView extends JComponent implements ActionListener, ChangeListener {
+public class ImageView extends JComponent implements ActionListener, ChangeListener, HierarchyListener {
+
+    //
+    // Constants
+    //
+    
+    /** Scales every frame ahead of time whenever the zoom level changes, with a rough preview until they are scaled. */
+    public static final int             RENDER_PRESCALED  = 0;
+    
+    /**
+     * Scales only the part of the current frame which is visible while painting, memory use
+     * stays the same at every zoom level.
+     */
+    public static final int             RENDER_VIEWPORT   = 1;
+    
+    /** {@link #setFrames(File)} decodes every frame into a whole image up front. */
+    public static final int             STORAGE_FRAMES    = 0;
+    
+    /** {@link #setFrames(File)} decodes the frames while they play, see {@link StreamingFrameSource}. */
+    public static final int             STORAGE_STREAMING = 1;
+    
+    /** {@link #setFrames(File)} keeps only the changed region of each frame, see {@link DeltaFrameSource}. */
+    public static final int             STORAGE_DELTA     = 2;
+    
+    /** {@link #setFrames(File)} keeps the frames off the heap, see {@link MappedFrameSource}. */
+    public static final int             STORAGE_MAPPED    = 3;
+    
+    /** {@link #setFrames(File)} decodes only the visible tiles of the image, see {@link TiledImageSource}. */
+    public static final int             STORAGE_TILED     = 4;
+    
+    /** Prescaled frames are scaled with Java2D's bicubic interpolation, which varies between pipelines. */
+    public static final int             FILTER_JAVA2D     = 0;
+    
+    /** Prescaled frames are scaled with a pure Java bilinear filter, see {@link Resampler}. */
+    public static final int             FILTER_BILINEAR   = Resampler.BILINEAR;
+    
+    /** Prescaled frames are scaled with a pure Java bicubic filter, see {@link Resampler}. */
+    public static final int             FILTER_BICUBIC    = Resampler.BICUBIC;
+    
+    /** Prescaled frames are scaled with a pure Java Lanczos filter, see {@link Resampler}. */
+    public static final int             FILTER_LANCZOS    = Resampler.LANCZOS;
+    
+    /**
+     * How long to wait before asking a frame source again for a frame it hadn't decoded yet,
+     * in milliseconds.
+     */
+    private static final int            STALL_DELAY       = 10;
+    
+    /**
+     * How long to wait for a frame source to catch up with the animation clock before the
+     * clock is restarted from wherever the source is, in milliseconds.
+     */
+    private static final int            STALL_LIMIT       = 250;
+    
+    /** The number of extra source pixels drawn around the visible region while painting. */
+    private static final int            VIEWPORT_MARGIN   = 2;
+
+    /** Scales the frames in parallel tiles, shared by every ImageView. */
+    static final TiledScaler            SCALER            = new TiledScaler();
+    
+    /** Drives the animation of every ImageView. */
+    private static final AnimationClock CLOCK             = new AnimationClock();
 
     //
     // Fields
     //
     
-    /** Causes the image to be changed when it comes time. */
-    private final Timer     animationTimer = new Timer( 1000, this );
+    /** Rescales the frames whenever the zoom level or frames change. */
+    private final ZoomScheduler            zoomScheduler     = new ZoomScheduler( this, SCALER );
+    
+    /** Told how long the frames take to decode, scale and paint, called from several threads. */
+    private final List< ImageViewMetrics > metrics           = new CopyOnWriteArrayList<>();
 
     /** The source frames. */
-    private BufferedImage[] frames;
+    private BufferedImage[]                frames;
+    
+    /** Supplies the frames one at a time instead of {@link #frames}, may be {@code null}. */
+    private FrameSource                    frameSource;
+    
+    /** Supplies the visible tiles of a single image instead of {@link #frames}, may be {@code null}. */
+    private TiledImageSource               tiledSource;
+    
+    /** The region of the tile source last asked for, in source pixels, {@code null} if none. */
+    private Rectangle                      tiledRegion;
+    
+    /** The subsampling the tiles were last asked for at. */
+    private int                            tiledPeriod;
+    
+    /** The current frame from the frame source. */
+    private BufferedImage                  sourceFrame;
+    
+    /** The mipmap pyramid of each source frame, {@code null} unless mipmaps are enabled. */
+    private ImagePyramid[]                 pyramids;
+    
+    /** The size of {@link #frames} relative to the image they show, less than 1 for previews. */
+    private double                         frameScale        = 1;
     
     /** The zoomed-in frames. */
-    private BufferedImage[] zoomedFrames;
+    private BufferedImage[]                zoomedFrames;
+    
+    /** A copy of the zoomed frame last painted in video memory, {@code null} unless enabled. */
+    private VolatileImage                  volatileFrame;
+    
+    /** The zoomed frame currently copied into {@link #volatileFrame}. */
+    private BufferedImage                  volatileContents;
+    
+    /** If the zoomed frame is painted from a copy in video memory. */
+    private boolean                        volatileEnabled;
+    
+    /** Shares decoded files with other ImageViews so they're only decoded once, may be {@code null}. */
+    private DecodedFrameCache              decodedFrameCache = DecodedFrameCache.getShared();
+    
+    /** The decoded file {@link #frames} are shared from, may be {@code null}. */
+    private DecodedFrameCache.Entry        decodedFrames;
+    
+    /** Keeps recently zoomed frames so zooming back to them is instant, may be {@code null}. */
+    private ScaledFrameCache               scaledFrameCache  = ScaledFrameCache.getShared();
 
-    /** The delay between frame updates. */
-    private int             frameDelay;
+    /** How long each of {@link #frames} is shown for, in milliseconds. */
+    private int[]                          frameDelays;
+    
+    /** The region which changed going into each of {@link #frames}, {@code null} until it is worked out. */
+    private Rectangle[]                    frameChanges;
     
     /** The current index in the frame array. */
-    private int             frameIndex;
+    private int                            frameIndex;
+    
+    /** The {@link System#nanoTime()} at which the current frame's time is up. */
+    private long                           frameDeadline;
+    
+    /** The {@link System#nanoTime()} at which the frame source first failed to keep up, or 0. */
+    private long                           stallStart;
+    
+    /** If the animation wants to be ticked, it is only ticked while the ImageView is showing. */
+    private boolean                        ticking;
+    
+    /** The {@link System#nanoTime()} the animation wants to be ticked at. */
+    private long                           tickDeadline;
+    
+    /** The {@link System#nanoTime()} at which the ImageView stopped showing, or 0. */
+    private long                           hiddenAt;
     
     /** The zoom level, 1 = 100% */
-    private double          zoom           = 1f;
+    private double                         zoom              = 1f;
+    
+    /** How the frames are scaled, either {@link #RENDER_PRESCALED} or {@link #RENDER_VIEWPORT}. */
+    private int                            renderMode        = RENDER_PRESCALED;
+    
+    /** The filter prescaled frames are scaled with, one of the filter constants. */
+    private int                            scaleFilter       = FILTER_JAVA2D;
+    
+    /** How {@link #setFrames(File)} stores the frames it reads. */
+    private int                            frameStorage      = STORAGE_FRAMES;
+    
+    /** The file being loaded in the background, may be {@code null}. */
+    private Future< Void >                 loading;
+    
+    /**
+     * The file {@link #frames} were decoded from at a lower resolution, it is decoded again
+     * when the ImageView is zoomed in past that resolution. May be {@code null}.
+     */
+    private File                           reloadFile;
     
     /** The slider that controls the ImageView's zoom */
-    private JSlider         zoomSlider;
+    private JSlider                        zoomSlider;
 
     //
     // Constructors
@@ -64,13 +207,27 @@ public class ImageView extends JComponent implements ActionListener, ChangeListe
      * Constructs a new ImageView.
      */
     public ImageView() {
-        animationTimer.setInitialDelay( 0 );
+        addHierarchyListener( this ); // the animation is paused while the ImageView isn't showing
     }
     
     //
     // Setters
     //
     
+    /**
+     * Changes the most times per second the animations of every ImageView are advanced, and so
+     * the most times per second they are repainted. Each pass advances every animation which
+     * is due at once, and animations with shorter frames skip frames to keep time.
+     * 
+     * @param fps
+     *            The new frame rate, 60 by default.
+     * @throws IllegalArgumentException
+     *             If {@code fps} was not positive.
+     */
+    public static void setMaxFrameRate( int fps ) throws IllegalArgumentException {
+        CLOCK.setMaxFrameRate( fps );
+    }
+    
     /**
      * Changes the zoom level of the image, 1.0 is normal zoom..
      * 
@@ -84,30 +241,145 @@ public class ImageView extends JComponent implements ActionListener, ChangeListe
             zoomSlider.setValue( ( int ) ( zoom * 100 ) );
         }
 
-        // start the image resizing thread
-        Thread thread = new Thread( new ImageZoomer( this ) );
-        thread.setName( "Image Zoomer" );
-        thread.start();
+        updatePreferredSize();
+        rescale();
+        reloadIfBlurry();
+    }
+    
+    /**
+     * Changes how the frames are scaled. {@link #RENDER_PRESCALED} scales every frame ahead of
+     * time, which makes painting cheap but holds the whole scaled image in memory.
+     * {@link #RENDER_VIEWPORT} scales only the visible part of the current frame while
+     * painting, which is best for large images in a JScrollPane.
+     * 
+     * @param mode
+     *            The new render mode.
+     * @throws IllegalArgumentException
+     *             If {@code mode} was not one of the render modes.
+     */
+    public void setRenderMode( int mode ) throws IllegalArgumentException {
+        if ( ( mode != RENDER_PRESCALED ) && ( mode != RENDER_VIEWPORT ) ) throw new IllegalArgumentException( "unknown render mode: " + mode );
+        
+        renderMode = mode;
+        rescale();
+        repaint();
     }
 
     /**
+     * Changes the filter prescaled frames are scaled with. Java2D's interpolation is the
+     * default, the pure Java filters give the same result on every JDK and pipeline, and
+     * don't alias when shrinking.
+     * 
+     * @param filter
+     *            One of {@link #FILTER_JAVA2D}, {@link #FILTER_BILINEAR},
+     *            {@link #FILTER_BICUBIC} or {@link #FILTER_LANCZOS}.
+     * @throws IllegalArgumentException
+     *             If {@code filter} wasn't one of the filter constants.
+     */
+    public void setScaleFilter( int filter ) throws IllegalArgumentException {
+        if ( ( filter < FILTER_JAVA2D ) || ( filter > FILTER_LANCZOS ) ) throw new IllegalArgumentException( "unknown filter: " + filter );
+        if ( filter == scaleFilter ) return;
+        
+        scaleFilter = filter;
+        rescale(); // the cache keeps the frames scaled with the old filter apart
+    }
+    
+    /**
+     * Enables or disables the mipmap pyramid. While enabled, each frame keeps copies of itself
+     * at half, a quarter, an eighth (and so on) of its size, which are built the first time a
+     * zoom level needs them. Zooming out is then scaled from the nearest of those copies
+     * instead of the full size frame, which is much faster and looks better on large images,
+     * at the cost of a third more memory.
+     * 
+     * @param enabled
+     *            If the mipmap pyramid should be used.
+     */
+    public void setMipmapsEnabled( boolean enabled ) {
+        if ( enabled == isMipmapsEnabled() ) return;
+        
+        pyramids = enabled ? new ImagePyramid[ 0 ] : null;
+        buildPyramids();
+        rescale();
+    }
+    
+    /**
+     * Enables or disables painting the zoomed frame from a copy in video memory. The zoomed
+     * frames are always created in the screen's format, but Java2D may still keep them in
+     * system memory. While enabled, the frame being shown is copied into a VolatileImage once
+     * and every repaint after that, such as while scrolling, is done entirely by the graphics
+     * card. Only frames which are scaled ahead of time are painted this way.
+     * 
+     * @param enabled
+     *            If the zoomed frame should be kept in video memory.
+     */
+    public void setVolatileImageEnabled( boolean enabled ) {
+        volatileEnabled = enabled;
+        if ( !enabled ) flushVolatileFrame();
+        
+        repaint();
+    }
+    
+    /**
+     * Changes how {@link #setFrames(File)} stores the frames it reads.
+     * {@link #STORAGE_FRAMES} decodes every frame into a whole image before anything is
+     * shown. {@link #STORAGE_STREAMING} decodes only the first frame before the animation
+     * starts playing, the rest are decoded in the background a few frames ahead of playback,
+     * which keeps large animations from taking a long time to open or a lot of memory to
+     * play. {@link #STORAGE_DELTA} keeps only the region of each frame which changed and
+     * layers them as they are shown, which is much smaller for screen recordings.
+     * {@link #STORAGE_MAPPED} keeps every frame in a memory-mapped temporary file, so long
+     * animations don't fill the heap. {@link #STORAGE_TILED} decodes only the tiles of the
+     * first frame which are on screen, for images too large to decode at once. Frames which
+     * aren't stored whole are always scaled while painting.
+     * 
+     * @param storage
+     *            The new frame storage.
+     * @throws IllegalArgumentException
+     *             If {@code storage} was not one of the frame storages.
+     */
+    public void setFrameStorage( int storage ) throws IllegalArgumentException {
+        if ( ( storage < STORAGE_FRAMES ) || ( storage > STORAGE_TILED ) ) throw new IllegalArgumentException( "unknown frame storage: " + storage );
+        
+        frameStorage = storage;
+    }
+    
+    /**
+     * Changes the cache of zoomed frames. Every ImageView shares the same cache by default, so
+     * they share one memory budget.
+     * 
+     * @param cache
+     *            The new cache, or {@code null} to rescale on every zoom change.
+     */
+    public void setScaledFrameCache( ScaledFrameCache cache ) {
+        uncacheFrames( decodedFrames != null ); // another ImageView may be showing the same decoded frames
+        scaledFrameCache = cache;
+    }
+    
+    /**
+     * Changes the cache which files are looked up in before {@link #setFrames(File)} and
+     * {@link #loadFrames(File)} decode them. Every ImageView shares the same cache by default.
+     * 
+     * @param cache
+     *            The new cache, or {@code null} to always decode files.
+     */
+    public void setDecodedFrameCache( DecodedFrameCache cache ) {
+        decodedFrameCache = cache;
+    }
+    
+    /**
+     * Shows a single image, BufferedImages are shown as they are and anything else is copied
+     * once, keeping its alpha.
+     * 
      * @param image
      *            The new image.
      */
     public void setImage( Image image ) {
-        // convert the image to a bufferedimage
-        BufferedImage bi = new BufferedImage( image.getWidth( null ), image.getHeight( null ), BufferedImage.TYPE_INT_RGB );
-        {
-            Graphics2D grafix = bi.createGraphics();
-            grafix.drawImage( image, 0, 0, null );
-            grafix.dispose();
-        }
-        setImage( bi );
+        setImage( CompatibleImages.toBufferedImage( image ) );
     }
     
     /**
      * @param bi
-     *            The new image.
+     *            The new image, it is shown as it is without being copied.
      */
     public void setImage( BufferedImage bi ) {
         setFrames( new BufferedImage[ ] { bi }, 1000 );
@@ -120,25 +392,92 @@ public class ImageView extends JComponent implements ActionListener, ChangeListe
      *            The delay (in milliseconds) between each frame.
      */
     public void setFrames( BufferedImage[] bis, int delay ) {
+        int[] delays = new int[ ( bis == null ) ? 0 : bis.length ];
+        Arrays.fill( delays, delay );
+        
+        setFrames( bis, delays );
+    }
+    
+    /**
+     * @param bis
+     *            The new set of frames for the image view.
+     * @param delays
+     *            How long each frame is shown for, in milliseconds.
+     * @throws IllegalArgumentException
+     *             If there wasn't a delay for every frame.
+     */
+    public void setFrames( BufferedImage[] bis, int[] delays ) throws IllegalArgumentException {
+        if ( ( bis != null ) && ( delays.length != bis.length ) ) throw new IllegalArgumentException( "there must be a delay for every frame!" );
+        
+        cancelLoading();
+        applyFrames( bis, delays, null, 1, null, null );
+    }
+    
+    /**
+     * Replaces the frames without cancelling the background load, which is what calls this.
+     * 
+     * @param bis
+     *            The new set of frames for the image view.
+     * @param delays
+     *            How long each frame is shown for, in milliseconds.
+     * @param changes
+     *            The region which changed going into each frame, or {@code null} to work them
+     *            out in the background.
+     * @param scale
+     *            The size of the frames relative to the image they show, a preview at half
+     *            resolution is 0.5.
+     * @param file
+     *            The file the frames can be decoded from again at full resolution, or
+     *            {@code null} if they are already or can't be.
+     * @param shared
+     *            The decoded file the frames are shared from, released once they are
+     *            replaced. May be {@code null}.
+     */
+    void applyFrames( BufferedImage[] bis, int[] delays, Rectangle[] changes, double scale, File file, DecodedFrameCache.Entry shared ) {
+        releaseFrames();
+        decodedFrames = shared;
+        
         frames = bis;
-        frameDelay = delay;
-        frameIndex = 0; // reset to the first frame
+        frameDelays = delays;
+        frameChanges = changes;
+        frameScale = scale;
+        reloadFile = file;
         
-        if ( ( bis != null ) && ( bis[ 0 ] != null ) ) {
-            setPreferredSize( new Dimension( ( int ) ( bis[ 0 ].getWidth() * zoom ), ( int ) ( bis[ 0 ].getHeight() * zoom ) ) );
-        }
-        else if ( bis != null ) {
+        if ( ( bis != null ) && ( bis[ 0 ] == null ) ) {
             frames = null;
         }
-
-        // restart the timer with the new delay
-        animationTimer.stop();
-        animationTimer.setDelay( frameDelay );
-        animationTimer.start();
+        else if ( ( bis != null ) && ( bis.length > 1 ) && ( changes == null ) ) {
+            FrameLoader.diff( this, bis ); // everything is repainted until then
+        }
+        
+        buildPyramids();
+        updatePreferredSize();
+        rescale(); // the old zoomed frames belong to the old image
+        restartAnimation();
+        reloadIfBlurry();
+        fireBytesHeld();
+    }
+    
+    /**
+     * Called on the event dispatch thread once the regions which changed between the frames
+     * have been worked out in the background.
+     * 
+     * @param bis
+     *            The frames the changes were worked out for.
+     * @param changes
+     *            The region which changed going into each frame.
+     */
+    void applyChanges( BufferedImage[] bis, Rectangle[] changes ) {
+        if ( bis == frames ) frameChanges = changes; // unless the frames were replaced since
     }
     
     /**
-     * Reads and loads all available images from the file using the ImageIO API.
+     * Reads and loads all available images from the file using the ImageIO API, on the
+     * calling thread. Large files are better read with {@link #loadFrames(File)}, which
+     * doesn't hold up the event dispatch thread. Frames which are held whole are only decoded
+     * at the resolution the current zoom level needs, so an image opened at 10% decodes every
+     * tenth pixel across and down, and they are decoded again in the background if the
+     * ImageView is zoomed in past that.
      * 
      * @param f
      *            The file to read.
@@ -148,81 +487,101 @@ public class ImageView extends JComponent implements ActionListener, ChangeListe
      *             If there were no available ImageReaders for the file.
      */
     public void setFrames( File f ) throws IOException, NoSuchElementException {
-
-        try ( ImageInputStream iis = ImageIO.createImageInputStream( f ) ) {
-            Iterator< ImageReader > readers = ImageIO.getImageReaders( iis );
-            
-            ImageReader reader = readers.next(); // get the image reader
-            reader.setInput( iis );
-            
-            int frameCount = reader.getNumImages( true ); // find the frame count
-            
-            BufferedImage[] frames = new BufferedImage[ frameCount ]; // all the frames in this image
-            
-            // read all the images in the file
-            for ( int i = 0; i < frameCount; i++ ) {
-                BufferedImage read = reader.read( i ); // read the image from the file
-                
-                if ( i == 0 ) {
-                    frames[ i ] = read; // set the frame
-                }
-                else {
-                    // gifs compress by removing unchanged pixels, so we have to add those pixels back in by layering this frame over the previous one
-
-                    BufferedImage previous = frames[ i - 1 ];
-                    BufferedImage layered = new BufferedImage( previous.getWidth(), previous.getHeight(), BufferedImage.TYPE_INT_RGB );
-                    {
-                        Graphics2D grafix = layered.createGraphics();
-                        grafix.drawImage( previous, 0, 0, null ); // draw the previous frame
-                        
-                        // the compressed images are offset to be aligned at the bottom-right corner
-                        int x = ( layered.getWidth() - read.getWidth() );
-                        int y = ( layered.getHeight() - read.getHeight() );
-                        grafix.drawImage( read, x, y, null );
-                        
-                        grafix.dispose();
-                    }
-                    frames[ i ] = layered; // set the frame
-                }
-                
-            } // end for
-
-            // read the time between each frame
-            int delay;
-            try {
-                IIOMetadata imageMetaData = reader.getImageMetadata( 0 );
-                String metaFormatName = imageMetaData.getNativeMetadataFormatName();
-                
-                IIOMetadataNode root = ( IIOMetadataNode ) imageMetaData.getAsTree( metaFormatName );
-                
-                IIOMetadataNode gceNode;
-                // find the gceNode
-                {
-                    int nNodes = root.getLength();
-                    for ( int i = 0; i < nNodes; i++ ) {
-                        if ( root.item( i ).getNodeName().compareToIgnoreCase( "GraphicsControlExtension" ) == 0 ) {
-                            gceNode = ( ( IIOMetadataNode ) root.item( i ) );
-                        }
-                    }
-                    IIOMetadataNode node = new IIOMetadataNode( "GraphicsControlExtension" );
-                    root.appendChild( node );
-                    
-                    gceNode = node;
-                }
-                
-                delay = Integer.parseInt( gceNode.getAttribute( "delayTime" ) ) * 10; // gif delay times are measured in centiseconds, not milliseconds
-                // the GIF file format is just filled with completely illogical things, centiseconds, bottom-right alignment, who knows what else?
-            }
-            catch ( NumberFormatException e ) {
-                delay = 100; // the delay couldn't be read
-            }
-            
-            setFrames( frames, delay ); // set the frames and the delay
-            setZoom( getZoom() );
-        }
-
+        cancelLoading();
+        new FrameLoader( this, f, frameStorage, getSubsampling(), false ).load().run();
+    }
+    
+    /**
+     * Reads the file in the background, stored the way {@link #setFrameStorage(int)} says, and
+     * shows its frames once they are all decoded. Until then, the first frame is shown as much
+     * of it as has been decoded, which for interlaced and progressive images is the whole
+     * frame at a lower resolution. Setting any other frames cancels the load.
+     * 
+     * @param f
+     *            The file to read.
+     * @return The load, which can be cancelled. If the file could not be read, getting the
+     *         result throws an ExecutionException caused by the IOException or
+     *         NoSuchElementException.
+     */
+    public Future< Void > loadFrames( File f ) {
+        cancelLoading();
+        
+        loading = FrameLoader.start( this, f, frameStorage, getSubsampling(), true );
+        return loading;
+    }
+    
+    /**
+     * Plays the frames supplied by the frame source. The ImageView closes the source when it
+     * is given another source or another set of frames.
+     * 
+     * @param source
+     *            The new frame source.
+     */
+    public void setFrameSource( FrameSource source ) {
+        cancelLoading();
+        applyFrameSource( source );
+    }
+    
+    /**
+     * Replaces the frame source without cancelling the background load, which is what calls
+     * this.
+     * 
+     * @param source
+     *            The new frame source.
+     */
+    void applyFrameSource( FrameSource source ) {
+        releaseFrames();
+        
+        frames = null;
+        frameScale = 1;
+        reloadFile = null;
+        frameSource = source;
+        sourceFrame = source.getFrame( 0 );
+        
+        buildPyramids();
+        updatePreferredSize();
+        rescale();
+        restartAnimation();
+        fireBytesHeld();
     }
 
+    /**
+     * Shows an image a tile at a time, decoding only the tiles which are visible. The
+     * ImageView closes the source when it is given another source or another set of frames.
+     * 
+     * @param source
+     *            The new tile source.
+     */
+    public void setTiledSource( TiledImageSource source ) {
+        cancelLoading();
+        applyTiledSource( source );
+    }
+    
+    /**
+     * Replaces the tile source without cancelling the background load, which is what calls
+     * this.
+     * 
+     * @param source
+     *            The new tile source.
+     */
+    void applyTiledSource( TiledImageSource source ) {
+        releaseFrames();
+        
+        frames = null;
+        frameScale = 1;
+        reloadFile = null;
+        tiledSource = source;
+        tiledRegion = null;
+        tiledSource.addChangeListener( this ); // repaint as the tiles are decoded
+        
+        buildPyramids();
+        updatePreferredSize();
+        rescale();
+        restartAnimation();
+        fireBytesHeld();
+        repaint();
+    }
+    
     /**
      * Sets the zoom slider for the ImageView. This slider controls the zoom of the image.
      * 
@@ -239,11 +598,60 @@ public class ImageView extends JComponent implements ActionListener, ChangeListe
         zoomSlider = slider;
         if ( zoomSlider != null ) zoomSlider.addChangeListener( this );
     }
+    
+    /**
+     * Adds a listener which is told how long the frames take to decode, scale and paint, and
+     * how much memory they take.
+     * 
+     * @param listener
+     *            The listener.
+     */
+    public void addMetricsListener( ImageViewMetrics listener ) {
+        metrics.add( listener );
+    }
+    
+    /**
+     * @param listener
+     *            The listener to remove.
+     */
+    public void removeMetricsListener( ImageViewMetrics listener ) {
+        metrics.remove( listener );
+    }
+
+    /**
+     * Called by the background load on the event dispatch thread just before it hands over
+     * the frames it read.
+     */
+    void finishLoading() {
+        loading = null;
+    }
+    
+    /**
+     * Called by the zoom scheduler on the event dispatch thread once the frames have been
+     * scaled to the current zoom level.
+     * 
+     * @param zoomed
+     *            The scaled frames.
+     */
+    void setZoomedFrames( BufferedImage[] zoomed ) {
+        if ( ( scaledFrameCache != null ) && ( zoomed != frames ) ) scaledFrameCache.put( frames, getFrameZoom(), scaleFilter, zoomed );
+        
+        zoomedFrames = zoomed;
+        fireBytesHeld();
+        repaint();
+    }
 
     //
     // Getters
     //
     
+    /**
+     * @return The most times per second the animations of every ImageView are advanced.
+     */
+    public static int getMaxFrameRate() {
+        return CLOCK.getMaxFrameRate();
+    }
+    
     /**
      * @return The current zoom level.
      */
@@ -251,6 +659,73 @@ public class ImageView extends JComponent implements ActionListener, ChangeListe
         return zoom;
     }
     
+    /**
+     * @return How {@link #setFrames(File)} stores the frames it reads.
+     */
+    public int getFrameStorage() {
+        return frameStorage;
+    }
+    
+    /**
+     * @return The source supplying the frames, or {@code null} if the frames are all in
+     *         memory.
+     */
+    public FrameSource getFrameSource() {
+        return frameSource;
+    }
+    
+    /**
+     * @return The source supplying the tiles of the image, or {@code null} if the image isn't
+     *         tiled.
+     */
+    public TiledImageSource getTiledSource() {
+        return tiledSource;
+    }
+    
+    /**
+     * @return The filter prescaled frames are scaled with.
+     */
+    public int getScaleFilter() {
+        return scaleFilter;
+    }
+    
+    /**
+     * @return If zooming out scales from a mipmap pyramid.
+     */
+    public boolean isMipmapsEnabled() {
+        return pyramids != null;
+    }
+    
+    /**
+     * @return If the zoomed frame is painted from a copy in video memory.
+     */
+    public boolean isVolatileImageEnabled() {
+        return volatileEnabled;
+    }
+    
+    /**
+     * @return The cache which files are looked up in before they are decoded, or {@code null}
+     *         if there isn't one.
+     */
+    public DecodedFrameCache getDecodedFrameCache() {
+        return decodedFrameCache;
+    }
+    
+    /**
+     * @return The cache of zoomed frames, or {@code null} if there isn't one.
+     */
+    public ScaledFrameCache getScaledFrameCache() {
+        return scaledFrameCache;
+    }
+    
+    /**
+     * @return How the frames are scaled, either {@link #RENDER_PRESCALED} or
+     *         {@link #RENDER_VIEWPORT}.
+     */
+    public int getRenderMode() {
+        return renderMode;
+    }
+    
     /**
      * @return The JSlider controlling zoom levels.
      */
@@ -259,18 +734,380 @@ public class ImageView extends JComponent implements ActionListener, ChangeListe
     }
 
     //
-    // Overrides
+    // Actions
     //
     
-    @Override
-    public void paint( Graphics g ) {
-        super.paint( g );
-        
-        BufferedImage frame;
-        if ( zoomedFrames != null ) {
-            frame = zoomedFrames[ frameIndex ];
+    /**
+     * Tells the metrics listeners a frame of a file has been decoded, called on the thread
+     * which loaded it.
+     * 
+     * @param index
+     *            The index of the frame.
+     * @param decodeNanos
+     *            How long the frame's pixels took to decode, in nanoseconds.
+     * @param compositeNanos
+     *            How long the frame took to layer over the frames before it, in nanoseconds.
+     */
+    void fireFrameDecoded( int index, long decodeNanos, long compositeNanos ) {
+        for ( ImageViewMetrics listener : metrics ) {
+            listener.frameDecoded( this, index, decodeNanos, compositeNanos );
+        }
+    }
+    
+    /**
+     * Tells the metrics listeners a frame has been scaled, called on the zoom thread.
+     * 
+     * @param index
+     *            The index of the frame.
+     * @param zoom
+     *            The zoom level the frame was scaled to.
+     * @param nanos
+     *            How long the frame took to scale, in nanoseconds.
+     */
+    void fireFrameScaled( int index, double zoom, long nanos ) {
+        for ( ImageViewMetrics listener : metrics ) {
+            listener.frameScaled( this, index, zoom, nanos );
+        }
+    }
+    
+    /**
+     * Tells the metrics listeners the scaled frame cache was looked in.
+     * 
+     * @param zoom
+     *            The zoom level looked for.
+     * @param hit
+     *            If the scaled frames were found.
+     */
+    private void fireCacheLookedUp( double zoom, boolean hit ) {
+        for ( ImageViewMetrics listener : metrics ) {
+            listener.cacheLookedUp( this, zoom, hit );
+        }
+    }
+    
+    /**
+     * Tells the metrics listeners how many bytes the frames now hold.
+     */
+    private void fireBytesHeld() {
+        if ( metrics.isEmpty() ) return; // don't bother adding it up
+        
+        long bytes = 0;
+        if ( frames != null ) bytes += ScaledFrameCache.sizeOf( frames );
+        if ( ( zoomedFrames != null ) && ( zoomedFrames != frames ) ) bytes += ScaledFrameCache.sizeOf( zoomedFrames );
+        if ( sourceFrame != null ) bytes += ScaledFrameCache.sizeOf( new BufferedImage[ ] { sourceFrame } );
+        if ( tiledSource != null ) bytes += tiledSource.getSize();
+        
+        for ( ImageViewMetrics listener : metrics ) {
+            listener.bytesHeld( this, bytes );
+        }
+    }
+    
+    /**
+     * Drops the current zoomed frames and schedules the frames to be scaled to the current
+     * zoom level, replacing any rescale which is still running.
+     */
+    private void rescale() {
+        zoomedFrames = null;
+        
+        if ( ( renderMode == RENDER_VIEWPORT ) || ( frameSource != null ) || ( tiledSource != null ) ) {
+            zoomScheduler.cancel(); // the frames are scaled while painting instead
+        }
+        else {
+            BufferedImage[] cached = null;
+            if ( ( frames != null ) && ( scaledFrameCache != null ) ) {
+                cached = scaledFrameCache.get( frames, getFrameZoom(), scaleFilter );
+                if ( ( cached != null ) && !CompatibleImages.isCompatible( cached[ 0 ], getGraphicsConfiguration() ) ) cached = null; // scaled for another screen
+                fireCacheLookedUp( getFrameZoom(), cached != null );
+            }
+            
+            if ( cached != null ) {
+                zoomScheduler.cancel(); // these frames were already zoomed to this level
+                setZoomedFrames( cached );
+            }
+            else {
+                zoomScheduler.schedule( frames, pyramids, getFrameZoom(), scaleFilter, getGraphicsConfiguration() );
+            }
+        }
+    }
+    
+    /**
+     * Decodes the frames again at a higher resolution in the background, if they were decoded
+     * at a lower resolution than the current zoom level shows. The current frames are scaled
+     * up until then.
+     */
+    private void reloadIfBlurry() {
+        if ( ( reloadFile == null ) || ( getFrameZoom() <= 1 ) ) return;
+        if ( loading != null ) return; // whatever is loading will check again once it is shown
+        
+        loading = FrameLoader.start( this, reloadFile, STORAGE_FRAMES, getSubsampling(), false );
+    }
+    
+    /**
+     * Cancels the background load, if there is one.
+     */
+    private void cancelLoading() {
+        if ( loading != null ) loading.cancel( true );
+        loading = null;
+    }
+    
+    /**
+     * Removes the zoomed copies of the current frames from the cache, since this ImageView
+     * won't zoom them again. They're left in the shared cache, where another ImageView showing
+     * the same decoded frames may still use them.
+     * 
+     * @param shared
+     *            If another ImageView is showing the same decoded frames.
+     */
+    private void uncacheFrames( boolean shared ) {
+        if ( ( scaledFrameCache == null ) || ( frames == null ) ) return;
+        if ( shared && ( scaledFrameCache == ScaledFrameCache.getShared() ) ) return;
+        
+        scaledFrameCache.remove( frames );
+    }
+    
+    /**
+     * Lets go of the current frames before they are replaced, closing the frame source if
+     * there is one.
+     */
+    private void releaseFrames() {
+        boolean shared = ( decodedFrames != null ) && decodedFrames.release( this );
+        decodedFrames = null;
+        
+        uncacheFrames( shared );
+        flushVolatileFrame();
+        
+        if ( frameSource != null ) {
+            try {
+                frameSource.close();
+            }
+            catch ( IOException e ) {
+                e.printStackTrace();
+            }
+            
+            frameSource = null;
+            sourceFrame = null;
+        }
+        
+        if ( tiledSource != null ) {
+            tiledSource.removeChangeListener( this );
+            tiledSource.close();
+            tiledSource = null;
+        }
+    }
+    
+    /**
+     * Frees the copy of the zoomed frame in video memory.
+     */
+    private void flushVolatileFrame() {
+        if ( volatileFrame != null ) volatileFrame.flush();
+        
+        volatileFrame = null;
+        volatileContents = null;
+    }
+    
+    /**
+     * Replaces the mipmap pyramids with empty ones for the current frames, if mipmaps are
+     * enabled. The levels themselves are built by the zoom scheduler when they are needed.
+     */
+    private void buildPyramids() {
+        if ( pyramids == null ) return;
+        
+        pyramids = new ImagePyramid[ ( frames == null ) ? 0 : frames.length ];
+        for ( int i = 0; i < pyramids.length; i++ ) {
+            pyramids[ i ] = new ImagePyramid( frames[ i ] );
+        }
+    }
+    
+    /**
+     * Goes back to the first frame and starts its clock.
+     */
+    private void restartAnimation() {
+        frameIndex = 0; // reset to the first frame
+        frameDeadline = System.nanoTime() + getDelayNanos( 0 );
+        stallStart = 0;
+        
+        ticking = false;
+        CLOCK.cancel( this );
+        if ( hiddenAt != 0 ) hiddenAt = System.nanoTime(); // the new animation hasn't been hidden for any time yet
+        if ( getFrameCount() != 1 ) scheduleTick( frameDeadline ); // a single frame never changes
+    }
+    
+    /**
+     * Asks the animation clock to tick the animation at the given time, or at that time after
+     * the ImageView is shown again if it isn't showing.
+     * 
+     * @param deadline
+     *            The {@link System#nanoTime()} to tick the animation at.
+     */
+    private void scheduleTick( long deadline ) {
+        ticking = true;
+        tickDeadline = deadline;
+        
+        if ( isShowing() ) {
+            CLOCK.schedule( this, deadline );
+        }
+        else if ( hiddenAt == 0 ) {
+            hiddenAt = System.nanoTime(); // we haven't been shown yet
+        }
+    }
+    
+    /**
+     * @return The zoom level the frames have to be scaled by to show them at the current
+     *         zoom level, which is only different for previews.
+     */
+    private double getFrameZoom() {
+        return zoom / frameScale;
+    }
+    
+    /**
+     * @return How many pixels across and down are skipped when frames which are held whole
+     *         are decoded at the current zoom level, 10% only needs every tenth pixel.
+     */
+    private int getSubsampling() {
+        return ( ( zoom > 0 ) && ( zoom < 1 ) ) ? ( int ) Math.floor( 1 / zoom ) : 1;
+    }
+    
+    /**
+     * @return The number of frames, or {@code -1} if the frame source doesn't know yet.
+     */
+    private int getFrameCount() {
+        if ( frameSource != null ) return frameSource.getFrameCount();
+        return ( frames == null ) ? 0 : frames.length;
+    }
+    
+    /**
+     * @param index
+     *            The index of the frame.
+     * @return How long the frame is shown for, in nanoseconds.
+     */
+    private long getDelayNanos( int index ) {
+        int delay;
+        if ( frameSource != null ) {
+            delay = frameSource.getDelay( index );
+        }
+        else if ( frameDelays != null ) {
+            delay = frameDelays[ index ];
+        }
+        else {
+            delay = FrameRegion.DEFAULT_DELAY;
+        }
+        
+        return TimeUnit.MILLISECONDS.toNanos( Math.max( 1, delay ) );
+    }
+    
+    /**
+     * @param index
+     *            The index of the frame.
+     * @return The region of the frame which changed going into it from the frame before, or
+     *         {@code null} if it isn't known.
+     */
+    private Rectangle getChangedBounds( int index ) {
+        if ( frameSource != null ) return frameSource.getChangedBounds( index );
+        
+        return ( frameChanges != null ) ? frameChanges[ index ] : null; // still being worked out
+    }
+    
+    /**
+     * Repaints only the part of the component which changed between two frames, or nothing at
+     * all if the frames are the same.
+     * 
+     * @param from
+     *            The index of the frame being shown.
+     * @param to
+     *            The index of the frame to show next, every frame in between is skipped.
+     */
+    private void repaintChanges( int from, int to ) {
+        int frameCount = getFrameCount();
+        
+        // the frames we skip count too, since they're skipped in one repaint
+        Rectangle changed = null;
+        for ( int index = from, steps = 0; index != to; steps++ ) {
+            index = ( frameCount > 0 ) ? ( index + 1 ) % frameCount : index + 1;
+            
+            Rectangle step = getChangedBounds( index );
+            if ( ( step == null ) || ( steps >= frameCount ) ) {
+                repaint(); // we don't know what changed
+                return;
+            }
+            
+            changed = ( changed == null ) ? step : changed.union( step );
+        }
+        if ( ( changed == null ) || changed.isEmpty() ) return; // nothing changed, so there's nothing to paint
+        
+        // work out where the frame is on screen, the same way it is painted
+        double scale = ( frameSource != null ) ? zoom : getFrameZoom();
+        int frameWidth = ( frameSource != null ) ? frameSource.getWidth() : frames[ 0 ].getWidth();
+        int frameHeight = ( frameSource != null ) ? frameSource.getHeight() : frames[ 0 ].getHeight();
+        int x = ( getWidth() - ( int ) ( frameWidth * scale ) ) / 2;
+        int y = ( getHeight() - ( int ) ( frameHeight * scale ) ) / 2;
+        
+        // scaling smears each pixel into its neighbours, so leave a margin
+        int margin = ( int ) Math.ceil( 2 * scale ) + 1;
+        int x0 = x + ( int ) Math.floor( changed.x * scale ) - margin;
+        int y0 = y + ( int ) Math.floor( changed.y * scale ) - margin;
+        int x1 = x + ( int ) Math.ceil( changed.getMaxX() * scale ) + margin;
+        int y1 = y + ( int ) Math.ceil( changed.getMaxY() * scale ) + margin;
+        
+        repaint( x0, y0, x1 - x0, y1 - y0 );
+    }
+    
+    /**
+     * Resizes the component to fit the first frame at the current zoom level.
+     */
+    private void updatePreferredSize() {
+        int width, height;
+        if ( tiledSource != null ) {
+            width = tiledSource.getWidth();
+            height = tiledSource.getHeight();
+        }
+        else if ( frameSource != null ) {
+            width = frameSource.getWidth();
+            height = frameSource.getHeight();
+        }
+        else if ( frames != null ) {
+            width = frames[ 0 ].getWidth();
+            height = frames[ 0 ].getHeight();
+        }
+        else {
+            return;
+        }
+        
+        setPreferredSize( new Dimension( ( int ) ( width * getFrameZoom() ), ( int ) ( height * getFrameZoom() ) ) );
+        revalidate();
+    }
+    
+    /**
+     * Paints the current frame.
+     * 
+     * @param g
+     *            The graphics to paint with.
+     */
+    private void paintFrame( Graphics g ) {
+        if ( tiledSource != null ) {
+            paintTiles( ( Graphics2D ) g );
+            return;
+        }
+        
+        if ( frameSource != null ) {
+            if ( sourceFrame != null ) paintViewport( ( Graphics2D ) g, sourceFrame, RenderingHints.VALUE_INTERPOLATION_BILINEAR );
+            return;
+        }
+        
+        if ( ( renderMode == RENDER_VIEWPORT ) && ( frames != null ) ) {
+            paintViewport( ( Graphics2D ) g, frames[ frameIndex ], RenderingHints.VALUE_INTERPOLATION_BILINEAR );
+            return;
+        }
+        
+        BufferedImage frame;
+        if ( zoomedFrames != null ) {
+            frame = zoomedFrames[ frameIndex ];
         }
         else if ( frames != null ) {
+            if ( getFrameZoom() != 1 ) {
+                // the frames are still being scaled, show a rough preview of the visible part until they are
+                paintViewport( ( Graphics2D ) g, frames[ frameIndex ], RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR );
+                return;
+            }
+            
             frame = frames[ frameIndex ];
         }
         else {
@@ -280,140 +1117,345 @@ public class ImageView extends JComponent implements ActionListener, ChangeListe
         int x = ( getWidth() - frame.getWidth() ) / 2;
         int y = ( getHeight() - frame.getHeight() ) / 2;
 
-        g.drawImage( frame, x, y, this );
+        if ( volatileEnabled ) {
+            paintVolatile( g, frame, x, y );
+        }
+        else {
+            g.drawImage( frame, x, y, this );
+        }
     }
     
-    @Override
-    public void actionPerformed( ActionEvent e ) {
-        // go to the next frame
-        frameIndex++;
-        if ( ( frames == null ) || ( frameIndex >= frames.length ) ) frameIndex = 0; // we've overstepped the number of frames
+    /**
+     * Draws the part of the frame which is inside the clip, scaled to the current zoom level.
+     * 
+     * @param g
+     *            The graphics to draw with.
+     * @param frame
+     *            The unscaled frame.
+     * @param interpolation
+     *            How the frame is scaled, one of the {@link RenderingHints} interpolation
+     *            values.
+     */
+    private void paintViewport( Graphics2D g, BufferedImage frame, Object interpolation ) {
+        double zoom = getFrameZoom();
+        int width = ( int ) ( frame.getWidth() * zoom );
+        int height = ( int ) ( frame.getHeight() * zoom );
+        
+        int x = ( getWidth() - width ) / 2;
+        int y = ( getHeight() - height ) / 2;
+
+        Rectangle visible = new Rectangle( x, y, width, height );
+        Rectangle clip = g.getClipBounds();
+        if ( clip != null ) visible = visible.intersection( clip );
+        if ( visible.isEmpty() ) return;
+        
+        // the region of the source frame that covers the visible region
+        int srcX0 = Math.max( 0, ( int ) Math.floor( ( visible.x - x ) / zoom ) - VIEWPORT_MARGIN );
+        int srcY0 = Math.max( 0, ( int ) Math.floor( ( visible.y - y ) / zoom ) - VIEWPORT_MARGIN );
+        int srcX1 = Math.min( frame.getWidth(), ( int ) Math.ceil( ( visible.getMaxX() - x ) / zoom ) + VIEWPORT_MARGIN );
+        int srcY1 = Math.min( frame.getHeight(), ( int ) Math.ceil( ( visible.getMaxY() - y ) / zoom ) + VIEWPORT_MARGIN );
+        if ( ( srcX1 <= srcX0 ) || ( srcY1 <= srcY0 ) ) return;
+        
+        Graphics2D grafix = ( Graphics2D ) g.create();
+        {
+            grafix.clip( visible );
+            grafix.setRenderingHint( RenderingHints.KEY_INTERPOLATION, interpolation );
+            grafix.translate( x, y );
+            grafix.scale( ( double ) width / frame.getWidth(), ( double ) height / frame.getHeight() );
+            grafix.drawImage( frame.getSubimage( srcX0, srcY0, srcX1 - srcX0, srcY1 - srcY0 ), srcX0, srcY0, null );
+        }
+        grafix.dispose();
+    }
+
+    /**
+     * Draws the tiles of the tiled image which are inside the clip, and asks for the tiles
+     * which are visible to be decoded. Tiles which haven't been decoded yet are covered by the
+     * overview.
+     * 
+     * @param g
+     *            The graphics to draw with.
+     */
+    private void paintTiles( Graphics2D g ) {
+        int width = ( int ) ( tiledSource.getWidth() * zoom );
+        int height = ( int ) ( tiledSource.getHeight() * zoom );
+        
+        int x = ( getWidth() - width ) / 2;
+        int y = ( getHeight() - height ) / 2;
+        
+        // the tiles are decoded at the nearest power of two subsampling, so they are still used after small zoom changes
+        int period = Integer.highestOneBit( getSubsampling() );
+        int span = TiledImageSource.TILE_SIZE * period;
+        
+        // ask for everything on screen, not just what is being repainted
+        Rectangle visible = getVisibleRect().intersection( new Rectangle( x, y, width, height ) );
+        if ( visible.isEmpty() ) return;
+        Rectangle wanted = toSource( visible, x, y );
+        if ( !wanted.equals( tiledRegion ) || ( period != tiledPeriod ) ) {
+            // only when it moves, asking again would hold up the overview for nothing
+            tiledSource.setVisibleRegion( wanted, period );
+            tiledRegion = wanted;
+            tiledPeriod = period;
+        }
+        
+        Rectangle clip = g.getClipBounds();
+        if ( clip != null ) visible = visible.intersection( clip );
+        if ( visible.isEmpty() ) return;
+        Rectangle region = toSource( visible, x, y ).intersection( new Rectangle( tiledSource.getWidth(), tiledSource.getHeight() ) );
+        
+        BufferedImage overview = tiledSource.getOverview();
+        
+        Graphics2D grafix = ( Graphics2D ) g.create();
+        {
+            grafix.clip( visible );
+            grafix.setRenderingHint( RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR );
             
-        repaint();
+            for ( int row = region.y / span; row <= ( ( region.y + region.height - 1 ) / span ); row++ ) {
+                for ( int column = region.x / span; column <= ( ( region.x + region.width - 1 ) / span ); column++ ) {
+                    // the tile's region of the image, and where that is on screen
+                    int srcX0 = column * span;
+                    int srcY0 = row * span;
+                    int srcX1 = Math.min( tiledSource.getWidth(), srcX0 + span );
+                    int srcY1 = Math.min( tiledSource.getHeight(), srcY0 + span );
+                    
+                    int dstX0 = x + ( int ) ( srcX0 * zoom );
+                    int dstY0 = y + ( int ) ( srcY0 * zoom );
+                    int dstX1 = x + ( int ) ( srcX1 * zoom );
+                    int dstY1 = y + ( int ) ( srcY1 * zoom );
+                    
+                    BufferedImage tile = tiledSource.getTile( period, column, row );
+                    if ( tile != null ) {
+                        grafix.drawImage( tile, dstX0, dstY0, dstX1, dstY1, 0, 0, tile.getWidth(), tile.getHeight(), null );
+                    }
+                    else if ( overview != null ) {
+                        double scaleX = ( double ) overview.getWidth() / tiledSource.getWidth();
+                        double scaleY = ( double ) overview.getHeight() / tiledSource.getHeight();
+                        grafix.drawImage( overview, dstX0, dstY0, dstX1, dstY1, ( int ) ( srcX0 * scaleX ), ( int ) ( srcY0 * scaleY ), ( int ) Math.ceil( srcX1 * scaleX ), ( int ) Math.ceil( srcY1 * scaleY ), null );
+                    }
+                }
+            }
+        }
+        grafix.dispose();
     }
     
-    @Override
-    public void stateChanged( ChangeEvent evt ) {
-        if ( evt.getSource() instanceof JSlider ) {
-            JSlider slider = ( JSlider ) evt.getSource();
+    /**
+     * Converts a region of the component into the region of the unscaled image it shows.
+     * 
+     * @param r
+     *            The region of the component.
+     * @param x
+     *            The x coordinate the image is drawn at.
+     * @param y
+     *            The y coordinate the image is drawn at.
+     * @return The region of the image, in unscaled pixels.
+     */
+    private Rectangle toSource( Rectangle r, int x, int y ) {
+        int srcX0 = ( int ) Math.floor( ( r.x - x ) / zoom );
+        int srcY0 = ( int ) Math.floor( ( r.y - y ) / zoom );
+        int srcX1 = ( int ) Math.ceil( ( r.getMaxX() - x ) / zoom );
+        int srcY1 = ( int ) Math.ceil( ( r.getMaxY() - y ) / zoom );
+        
+        return new Rectangle( srcX0, srcY0, srcX1 - srcX0, srcY1 - srcY0 );
+    }
+    
+    /**
+     * Draws a zoomed frame from its copy in video memory, copying it there first if it isn't
+     * already, or if the graphics card lost it.
+     * 
+     * @param g
+     *            The graphics to draw with.
+     * @param frame
+     *            The zoomed frame.
+     * @param x
+     *            The x coordinate to draw the frame at.
+     * @param y
+     *            The y coordinate to draw the frame at.
+     */
+    private void paintVolatile( Graphics g, BufferedImage frame, int x, int y ) {
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        if ( gc == null ) {
+            g.drawImage( frame, x, y, this ); // we aren't on a screen
+            return;
+        }
+        
+        do {
+            int status = ( volatileFrame == null ) ? VolatileImage.IMAGE_INCOMPATIBLE : volatileFrame.validate( gc );
             
-            double newZoom = slider.getValue() / 100.0;
+            if ( ( status == VolatileImage.IMAGE_INCOMPATIBLE ) || ( volatileFrame.getWidth() != frame.getWidth() ) || ( volatileFrame.getHeight() != frame.getHeight() ) ) {
+                flushVolatileFrame();
+                volatileFrame = gc.createCompatibleVolatileImage( frame.getWidth(), frame.getHeight(), frame.getTransparency() );
+            }
+            else if ( status == VolatileImage.IMAGE_RESTORED ) {
+                volatileContents = null; // the graphics card threw the pixels away
+            }
             
-            // the user is currently moving the slider
-            if ( slider.getValueIsAdjusting() ) {
-                if ( Math.abs( newZoom - getZoom() ) > 0.10f ) {
-                    setZoom( newZoom );
+            // copy the frame into video memory
+            if ( volatileContents != frame ) {
+                Graphics2D grafix = volatileFrame.createGraphics();
+                {
+                    grafix.setComposite( AlphaComposite.Src );
+                    grafix.drawImage( frame, 0, 0, null );
                 }
+                grafix.dispose();
+                
+                volatileContents = frame;
             }
-            else {
-                setZoom( newZoom );
-            }
-        }
+            
+            g.drawImage( volatileFrame, x, y, null );
+            
+            if ( volatileFrame.contentsLost() ) volatileContents = null;
+        } while ( volatileContents == null );
     }
-
+    
     //
-    // Nested Classes
+    // Overrides
     //
     
     /**
-     * Zooms the images to the requested size.
-     * 
-     * @author Austin
+     * Rescales the frames into the format of the screen the ImageView was added to, unless
+     * they are in it already.
      */
-    private class ImageZoomer implements Runnable {
-        
-        //
-        // Fields
-        //
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        flushVolatileFrame();
         
-        /** The ImageView whose frames we are modifying. */
-        private final ImageView component;
+        if ( ( renderMode == RENDER_PRESCALED ) && ( frames != null ) && ( ( zoomedFrames == null ) || !CompatibleImages.isCompatible( zoomedFrames[ 0 ], getGraphicsConfiguration() ) ) ) {
+            rescale(); // cached frames scaled for another screen are skipped
+        }
+    }
+    
+    @Override
+    public void removeNotify() {
+        flushVolatileFrame();
+        super.removeNotify();
+    }
+    
+    @Override
+    public void paint( Graphics g ) {
+        long start = System.nanoTime();
         
-        //
-        // Constructors
-        //
+        super.paint( g );
+        paintFrame( g );
         
-        /**
-         * Creates a new ImageZoomer for the given ImageView.
-         * 
-         * @param iv
-         *            The ImageView.
-         */
-        public ImageZoomer( ImageView iv ) {
-            component = iv;
+        if ( !metrics.isEmpty() ) {
+            long nanos = System.nanoTime() - start;
+            for ( ImageViewMetrics listener : metrics ) {
+                listener.painted( this, nanos );
+            }
         }
+    }
+    
+    /**
+     * Called by the animation clock when the current frame's time is up, moves on to the frame
+     * which should be showing now.
+     * 
+     * @param now
+     *            The {@link System#nanoTime()} of the clock's pass.
+     */
+    void tick( long now ) {
+        ticking = false;
         
-        //
-        // Actions
-        //
+        int frameCount = getFrameCount();
+        if ( frameCount == 0 ) return; // nothing to animate
         
-        /**
-         * Scales an image to the correct size.
-         * 
-         * @param bi
-         *            The image to scale.
-         * @param zoom
-         *            The new zoom level of the image.
-         * @return The image scaled.
-         */
-        private BufferedImage scaleImage( BufferedImage bi, double zoom ) {
-            int outWidth = ( int ) ( bi.getWidth() * zoom );
-            int outHeight = ( int ) ( bi.getHeight() * zoom );
+        // find the frame which should be showing now, skipping any frames we were too late for
+        int index = frameIndex;
+        long deadline = frameDeadline;
+        for ( int skipped = 0; deadline <= now; skipped++ ) {
+            if ( skipped > Math.max( frameCount, 1 ) ) {
+                deadline = now + getDelayNanos( index ); // we've fallen a whole loop behind, pick the clock up from here
+                break;
+            }
             
-            // TODO separate it out into tiles
+            index++;
+            if ( ( frameCount > 0 ) && ( index >= frameCount ) ) index = 0; // we've overstepped the number of frames
+            deadline += getDelayNanos( index );
+        }
+        
+        if ( ( frameSource != null ) && ( index != frameIndex ) ) {
+            BufferedImage frame = frameSource.getFrame( index );
             
-            BufferedImage output = new BufferedImage( outWidth, outHeight, BufferedImage.TYPE_INT_RGB );
-            Graphics2D grafix = output.createGraphics();
-            {
-                grafix.setRenderingHint( RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC );
-                grafix.drawImage( bi, 0, 0, outWidth, outHeight, null );
+            if ( frame == null ) {
+                // the frame hasn't been decoded yet, keep showing this one and check again soon
+                if ( stallStart == 0 ) stallStart = now;
+                if ( ( now - stallStart ) > TimeUnit.MILLISECONDS.toNanos( STALL_LIMIT ) ) {
+                    frameDeadline = now; // the source can't keep up, play at its pace instead
+                    stallStart = 0;
+                }
+                
+                scheduleTick( now + TimeUnit.MILLISECONDS.toNanos( STALL_DELAY ) );
+                return;
             }
-            grafix.dispose();
             
-            System.gc();
-            
-            return output;
+            sourceFrame = frame;
+            stallStart = 0;
         }
         
-        //
-        // Overrides
-        //
+        if ( index != frameIndex ) {
+            repaintChanges( frameIndex, index );
+            frameIndex = index;
+        }
         
-        @Override
-        public void run() {
+        frameDeadline = deadline;
+        scheduleTick( deadline );
+    }
+    
+    /**
+     * Moves on to the frame which should be showing now, the same as the animation clock
+     * does.
+     * 
+     * @deprecated ImageViews are animated by a shared clock, they no longer need a Timer of
+     *             their own.
+     */
+    @Override
+    @Deprecated
+    public void actionPerformed( ActionEvent e ) {
+        tick( System.nanoTime() );
+    }
+    
+    /**
+     * Pauses the animation while the ImageView isn't showing, and picks it up where it left off
+     * once it is showing again.
+     */
+    @Override
+    public void hierarchyChanged( HierarchyEvent e ) {
+        if ( ( e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED ) == 0 ) return;
+        
+        if ( !isShowing() ) {
+            CLOCK.cancel( this );
+            if ( hiddenAt == 0 ) hiddenAt = System.nanoTime();
+        }
+        else if ( hiddenAt != 0 ) {
+            // the time spent hidden doesn't count towards the current frame
+            long hidden = System.nanoTime() - hiddenAt;
+            frameDeadline += hidden;
+            tickDeadline += hidden;
+            hiddenAt = 0;
             
-            BufferedImage[] sources;
-            double zoom;
-            synchronized ( component ) {
-                sources = component.frames;
-                zoom = component.getZoom();
-
-                // take the shortcut to save time
-                if ( zoom == 1.0 ) {
-                    component.zoomedFrames = component.frames;
-                    return;
-                }
-                else {
-                    component.zoomedFrames = null;
-                }
-            }
+            if ( ticking ) CLOCK.schedule( this, tickDeadline );
+        }
+    }
+    
+    @Override
+    public void stateChanged( ChangeEvent evt ) {
+        if ( evt.getSource() instanceof TiledImageSource ) {
+            repaint(); // another tile was decoded
+        }
+        else if ( evt.getSource() instanceof JSlider ) {
+            JSlider slider = ( JSlider ) evt.getSource();
             
-            if ( sources == null ) return;
-
-            BufferedImage[] output = new BufferedImage[ sources.length ];
-            for ( int i = 0; i < output.length; i++ ) {
-                long start = System.currentTimeMillis();
-                output[ i ] = scaleImage( sources[ i ], zoom );
-                System.out.printf( " Resized %d, took %d millis%n", i, ( System.currentTimeMillis() - start ) );
-            }
+            double newZoom = slider.getValue() / 100.0;
             
-            synchronized ( component ) {
-                component.zoomedFrames = output;
+            // the user is currently moving the slider
+            if ( slider.getValueIsAdjusting() ) {
+                if ( Math.abs( newZoom - getZoom() ) > 0.10f ) {
+                    setZoom( newZoom );
+                }
+            }
+            else {
+                setZoom( newZoom );
             }
-
-            System.out.println( "images sized" );
         }
-
     }
 
 }
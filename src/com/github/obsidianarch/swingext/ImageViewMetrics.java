@@ -0,0 +1,83 @@
+package com.github.obsidianarch.swingext;
+
+import java.util.EventListener;
+
+/**
+ * Told how long an ImageView spends decoding, scaling and painting its frames, and how much
+ * memory they take, so the timings can be collected and charted. Every method does nothing
+ * by default, so only the measurements of interest need to be overridden. Methods are called
+ * on the thread which did the work, so they should be quick and thread safe.
+ *
+ * @author Austin
+ */
+public interface ImageViewMetrics extends EventListener {
+
+    /**
+     * Called after a frame of a file has been decoded, on the thread which loaded the file.
+     * Only frames which are held whole are measured.
+     *
+     * @param view
+     *            The ImageView the file is loaded into.
+     * @param index
+     *            The index of the frame.
+     * @param decodeNanos
+     *            How long the frame's pixels took to decode, in nanoseconds.
+     * @param compositeNanos
+     *            How long the frame took to layer over the frames before it, in nanoseconds.
+     */
+    default void frameDecoded( ImageView view, int index, long decodeNanos, long compositeNanos ) {
+    }
+
+    /**
+     * Called after a frame has been scaled to a new zoom level, on the zoom thread.
+     *
+     * @param view
+     *            The ImageView the frame belongs to.
+     * @param index
+     *            The index of the frame.
+     * @param zoom
+     *            The zoom level the frame was scaled to, relative to the frame.
+     * @param nanos
+     *            How long the frame took to scale, in nanoseconds.
+     */
+    default void frameScaled( ImageView view, int index, double zoom, long nanos ) {
+    }
+
+    /**
+     * Called when the ImageView looks for frames already scaled to a zoom level in its
+     * {@link ScaledFrameCache}, on the event dispatch thread.
+     *
+     * @param view
+     *            The ImageView.
+     * @param zoom
+     *            The zoom level, relative to the frames.
+     * @param hit
+     *            If the scaled frames were found.
+     */
+    default void cacheLookedUp( ImageView view, double zoom, boolean hit ) {
+    }
+
+    /**
+     * Called when the frames an ImageView holds change, on the event dispatch thread.
+     *
+     * @param view
+     *            The ImageView.
+     * @param bytes
+     *            The number of bytes held by the pixels of its frames, zoomed frames and
+     *            tiles.
+     */
+    default void bytesHeld( ImageView view, long bytes ) {
+    }
+
+    /**
+     * Called after the ImageView has painted, on the event dispatch thread.
+     *
+     * @param view
+     *            The ImageView.
+     * @param nanos
+     *            How long the paint took, in nanoseconds.
+     */
+    default void painted( ImageView view, long nanos ) {
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.github.obsidianarch.swingext;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Decodes every frame of an animation up front, but keeps the pixels in a memory-mapped
+ * temporary file instead of on the heap. Only the frame being shown is copied into an
+ * image, so heap use is the same however many frames there are, and the garbage collector
+ * never has to look at the rest. The operating system pages the file in and out as it
+ * needs to.
+ *
+ * @author Austin
+ */
+public class MappedFrameSource implements FrameSource {
+
+    //
+    // Constants
+    //
+
+    /** The most bytes mapped at once, larger files are mapped in several chunks. */
+    private static final int CHUNK_SIZE = 256 * 1024 * 1024;
+
+    //
+    // Fields
+    //
+
+    /** The temporary file the pixels are kept in. */
+    private final File              file;
+
+    /** The temporary file, open for as long as the source is. */
+    private final RandomAccessFile  raf;
+
+    /** The mapped chunks of the file, each holds {@link #framesPerChunk} frames. */
+    private final List< IntBuffer > chunks  = new ArrayList<>();
+
+    /** The number of frames in each chunk. */
+    private final int               framesPerChunk;
+
+    /** How long each frame is shown for, in milliseconds. */
+    private final int[]             delays;
+
+    /** The image every frame is copied into when it is asked for. */
+    private final BufferedImage     frame;
+
+    /** The pixels of {@link #frame}. */
+    private final int[]             pixels;
+
+    /** The index of the frame currently copied into {@link #frame}. */
+    private int                     current = -1;
+
+    /** If the source has been closed. */
+    private boolean                 closed;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Decodes every frame of the file into a new temporary file.
+     *
+     * @param f
+     *            The file to read.
+     * @throws IOException
+     *             If the file could not be read, or the temporary file could not be written.
+     * @throws NoSuchElementException
+     *             If there were no available ImageReaders for the file.
+     */
+    public MappedFrameSource( File f ) throws IOException, NoSuchElementException {
+        try ( FrameDecoder decoder = new FrameDecoder( f ) ) {
+            int width = decoder.getCanvasWidth();
+            int height = decoder.getCanvasHeight();
+
+            long frameSize = ( long ) width * height * 4;
+            if ( frameSize > CHUNK_SIZE ) throw new IOException( "Frames in " + f + " are too large to map" );
+
+            framesPerChunk = ( int ) ( CHUNK_SIZE / frameSize );
+            frame = new BufferedImage( width, height, BufferedImage.TYPE_INT_ARGB );
+            pixels = ( ( DataBufferInt ) frame.getRaster().getDataBuffer() ).getData();
+
+            file = File.createTempFile( "frames", ".tmp" );
+            file.deleteOnExit();
+            raf = new RandomAccessFile( file, "rw" );
+
+            try {
+                FileChannel channel = raf.getChannel();
+                ByteBuffer buffer = ByteBuffer.allocateDirect( ( int ) frameSize ).order( ByteOrder.nativeOrder() );
+                List< Integer > delays = new ArrayList<>();
+
+                // write all the frames in the file to the end of the temporary file
+                for ( BufferedImage bi = decoder.next(); bi != null; bi = decoder.next() ) {
+                    buffer.clear();
+                    buffer.asIntBuffer().put( ( ( DataBufferInt ) bi.getRaster().getDataBuffer() ).getData() );
+
+                    while ( buffer.hasRemaining() ) {
+                        channel.write( buffer );
+                    }
+
+                    delays.add( decoder.getDelay() );
+                }
+                if ( delays.isEmpty() ) throw new IOException( "No frames in " + f );
+
+                this.delays = new int[ delays.size() ];
+                for ( int i = 0; i < this.delays.length; i++ ) {
+                    this.delays[ i ] = delays.get( i );
+                }
+
+                // map the frames back in now the file won't grow any more
+                for ( int first = 0; first < this.delays.length; first += framesPerChunk ) {
+                    int count = Math.min( framesPerChunk, this.delays.length - first );
+                    chunks.add( channel.map( FileChannel.MapMode.READ_ONLY, first * frameSize, count * frameSize ).order( ByteOrder.nativeOrder() ).asIntBuffer() );
+                }
+            }
+            catch ( IOException | RuntimeException e ) {
+                close();
+                throw e;
+            }
+        }
+    }
+
+    //
+    // Getters
+    //
+
+    /**
+     * @return The size of the temporary file the frames are kept in, in bytes.
+     */
+    public long getFileSize() {
+        return file.length();
+    }
+
+    //
+    // Overrides
+    //
+
+    @Override
+    public int getFrameCount() {
+        return delays.length;
+    }
+
+    /**
+     * Gets a frame, copying it out of the temporary file. The same image is returned for
+     * every frame, so it is only valid until the next call.
+     */
+    @Override
+    public synchronized BufferedImage getFrame( int index ) {
+        if ( closed || ( index < 0 ) || ( index >= delays.length ) ) return null;
+
+        if ( index != current ) {
+            IntBuffer chunk = chunks.get( index / framesPerChunk );
+            chunk.position( ( index % framesPerChunk ) * pixels.length );
+            chunk.get( pixels );
+
+            current = index;
+        }
+
+        return frame;
+    }
+
+    @Override
+    public int getDelay( int index ) {
+        return delays[ index ];
+    }
+
+    @Override
+    public int getWidth() {
+        return frame.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return frame.getHeight();
+    }
+
+    /**
+     * Closes and deletes the temporary file. Some platforms won't delete a file while it is
+     * still mapped, in which case it is deleted when the virtual machine exits.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if ( closed ) return;
+
+        closed = true;
+        chunks.clear();
+        raf.close();
+        file.delete();
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.github.obsidianarch.swingext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.KeyStroke;
+
+/**
+ * A list of menu items and separators, built up and then added to a SimpleFrame in one pass
+ * with {@link SimpleFrame#addMenus(MenuSpec)}. Locations work the same way as they do for
+ * {@link SimpleFrame#addMenuItem(String...)}, so plugins can each describe their menus and
+ * the frame builds them all at once.
+ *
+ * @author Austin
+ */
+public class MenuSpec {
+
+    //
+    // Fields
+    //
+
+    /** The items and separators, in the order they were added. */
+    final List< Entry > entries = new ArrayList<>();
+
+    //
+    // Actions
+    //
+
+    /**
+     * Adds a menu item, and every string preceding it is a menu.
+     *
+     * @param command
+     *            The item's action command, the name of its action method.
+     * @param location
+     *            The location to get to the menu item.
+     * @return This MenuSpec.
+     * @throws IllegalArgumentException
+     *             If {@code location} was empty.
+     */
+    public MenuSpec addItem( String command, String... location ) throws IllegalArgumentException {
+        return addItem( null, command, location );
+    }
+
+    /**
+     * Adds a menu item, and every string preceding it is a menu. Also assigns the accelerator
+     * of the menu item.
+     *
+     * @param ks
+     *            The item's accelerator, may be {@code null}.
+     * @param command
+     *            The item's action command, the name of its action method.
+     * @param location
+     *            The location to get to the menu item.
+     * @return This MenuSpec.
+     * @throws IllegalArgumentException
+     *             If {@code location} was empty.
+     */
+    public MenuSpec addItem( KeyStroke ks, String command, String... location ) throws IllegalArgumentException {
+        if ( location.length == 0 ) throw new IllegalArgumentException( "location cannot be empty!" );
+
+        entries.add( new Entry( location, command, ks, false ) );
+        return this;
+    }
+
+    /**
+     * Adds a separator to the given hierarchy of menus.
+     *
+     * @param location
+     *            The menus to add the separator to.
+     * @return This MenuSpec.
+     * @throws IllegalArgumentException
+     *             If {@code location} was empty.
+     */
+    public MenuSpec addSeparator( String... location ) throws IllegalArgumentException {
+        if ( location.length == 0 ) throw new IllegalArgumentException( "location cannot be empty!" );
+
+        entries.add( new Entry( location, null, null, true ) );
+        return this;
+    }
+
+    //
+    // Nested Classes
+    //
+
+    /**
+     * A menu item or separator.
+     *
+     * @author Austin
+     */
+    static final class Entry {
+
+        //
+        // Fields
+        //
+
+        /** The location of the item, or of the menu the separator is in. */
+        final String[]  location;
+
+        /** The item's action command. */
+        final String    command;
+
+        /** The item's accelerator, may be {@code null}. */
+        final KeyStroke accelerator;
+
+        /** If this is a separator rather than an item. */
+        final boolean   separator;
+
+        //
+        // Constructors
+        //
+
+        /**
+         * Creates a new Entry.
+         *
+         * @param location
+         *            The location of the item, or of the menu the separator is in.
+         * @param command
+         *            The item's action command.
+         * @param accelerator
+         *            The item's accelerator, may be {@code null}.
+         * @param separator
+         *            If this is a separator rather than an item.
+         */
+        public Entry( String[] location, String command, KeyStroke accelerator, boolean separator ) {
+            this.location = location.clone();
+            this.command = command;
+            this.accelerator = accelerator;
+            this.separator = separator;
+        }
+
+    }
+
+}
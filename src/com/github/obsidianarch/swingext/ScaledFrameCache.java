@@ -0,0 +1,371 @@
+package com.github.obsidianarch.swingext;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of scaled frame sets, keyed by the frames they were scaled
+ * from, the zoom level and the filter. The least recently used sets are evicted whenever the
+ * cache holds more bytes than its budget. Every ImageView shares one cache by default, so
+ * they all stay within a single budget. The source frames are only held weakly, so a frame
+ * set is dropped once nothing else holds the frames it was scaled from.
+ *
+ * @author Austin
+ */
+public class ScaledFrameCache {
+
+    //
+    // Constants
+    //
+
+    /** The default budget, in bytes. */
+    public static final long              DEFAULT_BUDGET = 128L * 1024 * 1024;
+
+    /** The cache shared by every ImageView unless it is given another. */
+    private static final ScaledFrameCache SHARED         = new ScaledFrameCache();
+
+    //
+    // Fields
+    //
+
+    /** The cached frame sets, iterated from least to most recently used. */
+    private final Map< Key, BufferedImage[] > entries = new LinkedHashMap<>( 16, 0.75f, true );
+
+    /** The keys whose source frames have been garbage collected. */
+    private final ReferenceQueue< Object >    queue   = new ReferenceQueue<>();
+
+    /** The most bytes the cache may hold. */
+    private long                              budget;
+
+    /** The bytes currently held. */
+    private long                              size;
+
+    /** The number of lookups which found a frame set. */
+    private long                              hits;
+
+    /** The number of lookups which didn't find a frame set. */
+    private long                              misses;
+
+    /** The number of frame sets evicted to stay under the budget. */
+    private long                              evictions;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a new ScaledFrameCache with the default budget.
+     */
+    public ScaledFrameCache() {
+        this( DEFAULT_BUDGET );
+    }
+
+    /**
+     * Constructs a new ScaledFrameCache.
+     *
+     * @param budget
+     *            The most bytes the cache may hold.
+     * @throws IllegalArgumentException
+     *             If {@code budget} was negative.
+     */
+    public ScaledFrameCache( long budget ) throws IllegalArgumentException {
+        setBudget( budget );
+    }
+
+    //
+    // Setters
+    //
+
+    /**
+     * Changes the most bytes the cache may hold, evicting frame sets if it now holds too
+     * many.
+     *
+     * @param budget
+     *            The new budget, in bytes.
+     * @throws IllegalArgumentException
+     *             If {@code budget} was negative.
+     */
+    public synchronized void setBudget( long budget ) throws IllegalArgumentException {
+        if ( budget < 0 ) throw new IllegalArgumentException( "budget cannot be negative!" );
+
+        this.budget = budget;
+        trim();
+    }
+
+    //
+    // Getters
+    //
+
+    /**
+     * @return The cache shared by every ImageView unless it is given another.
+     */
+    public static ScaledFrameCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * @return The most bytes the cache may hold.
+     */
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return The bytes currently held.
+     */
+    public synchronized long getSize() {
+        expunge();
+        return size;
+    }
+
+    /**
+     * @return The number of frame sets currently held.
+     */
+    public synchronized int getEntryCount() {
+        expunge();
+        return entries.size();
+    }
+
+    /**
+     * @return The number of lookups which found a frame set.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return The number of lookups which didn't find a frame set.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return The number of frame sets evicted to stay under the budget.
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    //
+    // Actions
+    //
+
+    /**
+     * Gets the frame set scaled from {@code frames} to the zoom level.
+     *
+     * @param frames
+     *            The source frames.
+     * @param zoom
+     *            The zoom level.
+     * @return The scaled frames, or {@code null} if they aren't cached.
+     */
+    public BufferedImage[] get( BufferedImage[] frames, double zoom ) {
+        return get( frames, zoom, 0 );
+    }
+
+    /**
+     * Gets the frame set scaled from {@code frames} to the zoom level with a filter.
+     *
+     * @param frames
+     *            The source frames.
+     * @param zoom
+     *            The zoom level.
+     * @param filter
+     *            The ImageView filter the frames were scaled with.
+     * @return The scaled frames, or {@code null} if they aren't cached.
+     */
+    synchronized BufferedImage[] get( BufferedImage[] frames, double zoom, int filter ) {
+        expunge();
+        BufferedImage[] scaled = entries.get( new Key( frames, zoom, filter, null ) );
+
+        if ( scaled != null ) {
+            hits++;
+        }
+        else {
+            misses++;
+        }
+
+        return scaled;
+    }
+
+    /**
+     * Caches the frame set scaled from {@code frames} to the zoom level, then evicts the least
+     * recently used frame sets until the cache is under budget.
+     *
+     * @param frames
+     *            The source frames.
+     * @param zoom
+     *            The zoom level.
+     * @param scaled
+     *            The scaled frames.
+     */
+    public void put( BufferedImage[] frames, double zoom, BufferedImage[] scaled ) {
+        put( frames, zoom, 0, scaled );
+    }
+
+    /**
+     * Caches the frame set scaled from {@code frames} to the zoom level with a filter, then
+     * evicts the least recently used frame sets until the cache is under budget.
+     *
+     * @param frames
+     *            The source frames.
+     * @param zoom
+     *            The zoom level.
+     * @param filter
+     *            The ImageView filter the frames were scaled with.
+     * @param scaled
+     *            The scaled frames.
+     */
+    synchronized void put( BufferedImage[] frames, double zoom, int filter, BufferedImage[] scaled ) {
+        expunge();
+        BufferedImage[] previous = entries.put( new Key( frames, zoom, filter, queue ), scaled );
+        if ( previous != null ) size -= sizeOf( previous );
+
+        size += sizeOf( scaled );
+        trim();
+    }
+
+    /**
+     * Removes every frame set scaled from {@code frames}.
+     *
+     * @param frames
+     *            The source frames.
+     */
+    public synchronized void remove( BufferedImage[] frames ) {
+        Iterator< Map.Entry< Key, BufferedImage[] > > it = entries.entrySet().iterator();
+        while ( it.hasNext() ) {
+            Map.Entry< Key, BufferedImage[] > entry = it.next();
+            if ( entry.getKey().get() != frames ) continue;
+
+            size -= sizeOf( entry.getValue() );
+            it.remove();
+        }
+    }
+
+    /**
+     * Removes every frame set.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Removes the frame sets whose source frames have been garbage collected.
+     */
+    private void expunge() {
+        Key key;
+        while ( ( key = ( Key ) queue.poll() ) != null ) {
+            BufferedImage[] scaled = entries.remove( key );
+            if ( scaled != null ) size -= sizeOf( scaled );
+        }
+    }
+
+    /**
+     * Evicts the least recently used frame sets until the cache is under budget.
+     */
+    private void trim() {
+        Iterator< BufferedImage[] > it = entries.values().iterator();
+        while ( ( size > budget ) && it.hasNext() ) {
+            size -= sizeOf( it.next() );
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Calculates the number of bytes held by a set of frames.
+     *
+     * @param frames
+     *            The frames.
+     * @return The number of bytes held by the frames' pixels.
+     */
+    static long sizeOf( BufferedImage[] frames ) {
+        long bytes = 0;
+
+        for ( BufferedImage frame : frames ) {
+            DataBuffer buffer = frame.getRaster().getDataBuffer();
+            bytes += ( ( long ) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize( buffer.getDataType() ) ) / 8;
+        }
+
+        return bytes;
+    }
+
+    //
+    // Nested Classes
+    //
+
+    /**
+     * Identifies a frame set by the identity of its source frames, its zoom level and its
+     * filter. The source frames are only referenced weakly, once they're collected the key
+     * only equals itself.
+     *
+     * @author Austin
+     */
+    private static class Key extends WeakReference< BufferedImage[] > {
+
+        //
+        // Fields
+        //
+
+        /** The identity hash code of the source frames. */
+        private final int    hash;
+
+        /** The zoom level. */
+        private final double zoom;
+
+        /** The ImageView filter the frames were scaled with. */
+        private final int    filter;
+
+        //
+        // Constructors
+        //
+
+        /**
+         * Creates a new Key.
+         *
+         * @param frames
+         *            The source frames.
+         * @param zoom
+         *            The zoom level.
+         * @param filter
+         *            The ImageView filter the frames were scaled with.
+         * @param queue
+         *            The queue the key is added to once the source frames are collected, may
+         *            be {@code null}.
+         */
+        public Key( BufferedImage[] frames, double zoom, int filter, ReferenceQueue< Object > queue ) {
+            super( frames, queue );
+            this.hash = System.identityHashCode( frames );
+            this.zoom = zoom;
+            this.filter = filter;
+        }
+
+        //
+        // Overrides
+        //
+
+        @Override
+        public boolean equals( Object obj ) {
+            if ( obj == this ) return true;
+            if ( !( obj instanceof Key ) ) return false;
+
+            Key key = ( Key ) obj;
+            BufferedImage[] frames = get();
+            return ( frames != null ) && ( key.get() == frames ) && ( Double.compare( key.zoom, zoom ) == 0 ) && ( key.filter == filter );
+        }
+
+        @Override
+        public int hashCode() {
+            return ( 31 * ( ( 31 * hash ) + Double.hashCode( zoom ) ) ) + filter;
+        }
+
+    }
+
+}
@@ -2,11 +2,19 @@ package com.github.obsidianarch.swingext;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.ContainerEvent;
+import java.awt.event.ContainerListener;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
-import java.lang.reflect.InvocationTargetException;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,24 +27,63 @@ import javax.swing.KeyStroke;
 
 /**
  * A simple extension on JFrame which makes is much easier and cleaner to add actions to
- * components.
+ * components. The partial class is scanned for action methods once, when the frame is
+ * created, so an action is a single lookup and a direct call. If the partial class's action
+ * methods are marked with {@link Action}, the dispatcher generated by the
+ * {@link ActionProcessor} can be given instead so no reflection is used at all. Actions run on
+ * the event dispatch thread unless they're given a BACKGROUND policy, long actions should be
+ * run in the background so they don't freeze the frame.
  * 
  * @author Austin
  */
 public class SimpleFrame extends JFrame implements ActionListener, WindowListener {
     
+    //
+    // Constants
+    //
+    
+    /** The action runs on the event dispatch thread, the default. */
+    public static final int FOREGROUND                 = 0;
+    
+    /** The action runs in the background, and is ignored if it comes again while running. */
+    public static final int BACKGROUND_DROP            = 1;
+    
+    /**
+     * The action runs in the background, and if it comes again while running it's run again
+     * once the running one finishes.
+     */
+    public static final int BACKGROUND_QUEUE           = 2;
+    
+    /**
+     * The action runs in the background, and if it comes again while running the running one
+     * is cancelled and it's started again straight away.
+     */
+    public static final int BACKGROUND_CANCEL_PREVIOUS = 3;
+    
     //
     // Fields
     //
     
-    /** The partial class which contains all the action methods. */
-    private final Class< ? >     partialClass;
+    /** The type of every action, called with the frame. */
+    private static final MethodType      ACTION_TYPE   = MethodType.methodType( void.class, SimpleFrame.class );
+    
+    /** Calls the action methods of the partial class. */
+    private final ActionDispatcher       dispatcher;
+    
+    /** The policies given to action commands, which replace the dispatcher's. */
+    private final Map< String, Integer > policies      = new HashMap<>();
     
-    /** The top level menus in the menu bar. */
-    private Map< String, JMenu > topLevelMenus = new HashMap<>();
+    /** Runs the background actions. */
+    private final BackgroundActions      background    = new BackgroundActions( this );
+    
+    /** The top level menus in the menu bar, and the index of the menus under them. */
+    private Map< String, MenuNode >      topLevelMenus = new HashMap<>();
     
     /** The menubar on this program. */
-    private JMenuBar             menuBar       = new JMenuBar();
+    private JMenuBar                     menuBar       = new JMenuBar();
+    
+    /** If the menu items have been checked for missing action methods. */
+    private boolean                      actionsChecked;
 
     //
     // Constructors
@@ -48,42 +95,236 @@ public class SimpleFrame extends JFrame implements ActionListener, WindowListene
      * @param partial
      *            The class which contains all action code.
      * @throws IllegalArgumentException
-     *             If {@code partial} was null.
+     *             If {@code partial} was null, or one of its actions has an unknown policy.
      */
     public SimpleFrame( Class< ? > partial ) throws IllegalArgumentException {
-        if ( partial == null ) throw new IllegalArgumentException( "partial class cannot be null!" );
-        partialClass = partial;
+        this( reflect( partial ) );
+    }
+    
+    /**
+     * Constructs a new SimpleFrame which calls action methods through the given dispatcher,
+     * normally the one the {@link ActionProcessor} generated for the partial class.
+     * 
+     * @param dispatcher
+     *            Calls the action methods.
+     * @throws IllegalArgumentException
+     *             If {@code dispatcher} was null.
+     */
+    public SimpleFrame( ActionDispatcher dispatcher ) throws IllegalArgumentException {
+        if ( dispatcher == null ) throw new IllegalArgumentException( "dispatcher cannot be null!" );
+        this.dispatcher = dispatcher;
 
         addWindowListener( this );
     }
     
+    //
+    // Setters
+    //
+    
+    /**
+     * Changes where a command's action runs, replacing the policy from its {@link Action}
+     * annotation. A background action must not touch the frame's components itself, it should
+     * use {@link javax.swing.SwingUtilities#invokeLater(Runnable)}. When it finishes,
+     * {@link #actionFinished(String, Throwable)} is called on the event dispatch thread. Must
+     * be called on the event dispatch thread.
+     * 
+     * @param command
+     *            The action command.
+     * @param policy
+     *            {@link #FOREGROUND}, {@link #BACKGROUND_DROP}, {@link #BACKGROUND_QUEUE} or
+     *            {@link #BACKGROUND_CANCEL_PREVIOUS}.
+     * @throws IllegalArgumentException
+     *             If {@code policy} was not one of the above.
+     */
+    public void setActionPolicy( String command, int policy ) throws IllegalArgumentException {
+        if ( ( policy < FOREGROUND ) || ( policy > BACKGROUND_CANCEL_PREVIOUS ) ) throw new IllegalArgumentException( "Unknown action policy: " + policy + "!" );
+        
+        policies.put( command, policy );
+    }
+    
+    //
+    // Getters
+    //
+    
+    /**
+     * @param command
+     *            The action command.
+     * @return Where the command's action runs, {@link #FOREGROUND} or one of the BACKGROUND
+     *         policies.
+     */
+    public int getActionPolicy( String command ) {
+        Integer policy = policies.get( command );
+        return ( policy != null ) ? policy : dispatcher.getPolicy( command );
+    }
+    
+    /**
+     * Must be called on the event dispatch thread.
+     * 
+     * @param command
+     *            The action command.
+     * @return If the command's background action is running, a cancelled action is running
+     *         until it returns.
+     */
+    public boolean isActionRunning( String command ) {
+        return background.isRunning( command );
+    }
+    
+    /**
+     * @return Calls the action methods of the partial class.
+     */
+    ActionDispatcher getDispatcher() {
+        return dispatcher;
+    }
+    
     //
     // Actions
     //
     
     /**
-     * Builds an array of methods with matching names in the partial class.
+     * Cancels a command's background action if it's running, along with any runs of it which
+     * are queued. The action's thread is interrupted, so a long action should check
+     * {@link Thread#isInterrupted()} and stop when it is. It still counts as running until it
+     * returns. Must be called on the event dispatch thread.
+     * 
+     * @param command
+     *            The action command.
+     */
+    public void cancelAction( String command ) {
+        background.cancel( command );
+    }
+    
+    /**
+     * Creates a dispatcher which calls the action methods of the partial class through
+     * reflection.
      * 
-     * @param methodName
-     *            The name of the method.
-     * @return An array of the methods with the same name.
+     * @param partial
+     *            The class which contains all action code.
+     * @return The dispatcher.
+     * @throws IllegalArgumentException
+     *             If {@code partial} was null, or one of its actions has an unknown policy.
+     */
+    private static ActionDispatcher reflect( Class< ? > partial ) throws IllegalArgumentException {
+        if ( partial == null ) throw new IllegalArgumentException( "partial class cannot be null!" );
+        final Map< String, Integer >      policies = new HashMap<>();
+        final Map< String, MethodHandle > actions  = findActions( partial, policies );
+        
+        return new ActionDispatcher() {
+            
+            @Override
+            public boolean dispatch( SimpleFrame frame, String command ) throws Exception {
+                MethodHandle action = actions.get( command );
+                if ( action == null ) return false;
+                
+                try {
+                    action.invokeExact( frame );
+                }
+                catch ( Exception | Error e ) {
+                    throw e;
+                }
+                catch ( Throwable t ) {
+                    throw new Exception( t ); // only declared Throwables are left
+                }
+                return true;
+            }
+            
+            @Override
+            public boolean hasAction( String command ) {
+                return actions.containsKey( command );
+            }
+            
+            @Override
+            public int getPolicy( String command ) {
+                Integer policy = policies.get( command );
+                return ( policy != null ) ? policy : FOREGROUND;
+            }
+            
+        };
+    }
+    
+    /**
+     * Finds the action method for every name in the partial class, and turns each one into a
+     * method handle that takes the frame. A method with no parameters is preferred over one
+     * which takes the frame, and methods which can't be called are left out. Methods marked
+     * with {@link Action} are found by their action command instead of their name.
+     * 
+     * @param partial
+     *            The partial class.
+     * @param policies
+     *            Filled with the policy of each action method marked with {@link Action}.
+     * @return The action methods, by name.
      * @throws SecurityException
      *             If the security manager does not allow access to the reflections api.
+     * @throws IllegalArgumentException
+     *             If an action method has an unknown policy.
      */
-    private Method[] getMatchingMethods( String methodName ) throws SecurityException {
-        Method[] methods = partialClass.getDeclaredMethods(); // all methods declared in the class, non-inherited methods
-        
-        List< Method > matchingMethods = new ArrayList<>(); // a list of the methods that are matching
+    private static Map< String, MethodHandle > findActions( Class< ? > partial, Map< String, Integer > policies ) throws SecurityException, IllegalArgumentException {
+        // group the methods by name, they're all non-inherited methods declared in the class
+        Map< String, List< Method > > named = new HashMap<>();
+        for ( Method method : partial.getDeclaredMethods() ) {
+            Action annotation = method.getAnnotation( Action.class );
+            String name = ( ( annotation != null ) && !annotation.value().isEmpty() ) ? annotation.value() : method.getName();
+            
+            List< Method > methods = named.get( name );
+            if ( methods == null ) named.put( name, methods = new ArrayList<>() );
+            methods.add( method );
+        }
         
-        for ( Method method : methods ) {
-            if ( !method.getName().equals( methodName ) ) continue; // is the method named correctly?
-
-            matchingMethods.add( method ); // add the matching method to the list
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Map< String, MethodHandle > actions = new HashMap<>();
+        for ( Map.Entry< String, List< Method > > entry : named.entrySet() ) {
+            Method[] methods = entry.getValue().toArray( new Method[ 0 ] );
+            
+            try {
+                Method method = getNoParameters( methods );
+                if ( method != null ) {
+                    MethodHandle handle = lookup.unreflect( method );
+                    if ( Modifier.isStatic( method.getModifiers() ) ) handle = MethodHandles.dropArguments( handle, 0, SimpleFrame.class ); // the frame isn't needed
+                    actions.put( entry.getKey(), handle.asType( ACTION_TYPE ) );
+                    putPolicy( policies, entry.getKey(), method );
+                    continue;
+                }
+                
+                method = getFrameParameter( methods );
+                if ( method != null ) {
+                    MethodHandle handle = lookup.unreflect( method );
+                    if ( !Modifier.isStatic( method.getModifiers() ) ) {
+                        // the frame is both the method's target and its parameter
+                        handle = MethodHandles.permuteArguments( handle.asType( MethodType.methodType( void.class, SimpleFrame.class, SimpleFrame.class ) ), ACTION_TYPE, 0, 0 );
+                    }
+                    actions.put( entry.getKey(), handle.asType( ACTION_TYPE ) );
+                    putPolicy( policies, entry.getKey(), method );
+                }
+            }
+            catch ( IllegalAccessException e ) {
+                // not accessible, so it isn't an action
+            }
         }
-
-        return matchingMethods.toArray( new Method[ 0 ] );
+        
+        return actions;
     }
 
+    /**
+     * Records the policy of an action method, if it's marked with {@link Action}.
+     * 
+     * @param policies
+     *            The policy of each action command.
+     * @param command
+     *            The action command.
+     * @param method
+     *            The action method.
+     * @throws IllegalArgumentException
+     *             If the policy isn't one of the action policies.
+     */
+    private static void putPolicy( Map< String, Integer > policies, String command, Method method ) throws IllegalArgumentException {
+        Action annotation = method.getAnnotation( Action.class );
+        if ( annotation == null ) return;
+        
+        int policy = annotation.policy();
+        if ( ( policy < FOREGROUND ) || ( policy > BACKGROUND_CANCEL_PREVIOUS ) ) throw new IllegalArgumentException( "Unknown action policy: " + policy + "!" );
+        
+        policies.put( command, policy );
+    }
+    
     /**
      * Gets the partial class's method if there are no parameters for the method.
      * 
@@ -94,7 +335,7 @@ public class SimpleFrame extends JFrame implements ActionListener, WindowListene
      *             If the security manager does not allow for access to the reflections
      *             api.
      */
-    private Method getNoParameters( Method[] methods ) throws SecurityException {
+    private static Method getNoParameters( Method[] methods ) throws SecurityException {
         for ( Method method : methods ) {
             if ( method.getParameterTypes().length == 0 ) return method; // no parameters
         }
@@ -113,7 +354,7 @@ public class SimpleFrame extends JFrame implements ActionListener, WindowListene
      *             If the security manager does not allow for access to the reflections
      *             api.
      */
-    private Method getFrameParameter( Method[] methods ) throws SecurityException {
+    private static Method getFrameParameter( Method[] methods ) throws SecurityException {
         
         // iterate over each method
         for ( Method method : methods ) {
@@ -175,7 +416,36 @@ public class SimpleFrame extends JFrame implements ActionListener, WindowListene
     }
     
     /**
-     * Gets a JMenu from the hierarchy.
+     * Adds every menu item and separator in the spec, in order.
+     * 
+     * @param spec
+     *            The menu items and separators.
+     * @return The menu items that were created, in order.
+     * @throws IllegalArgumentException
+     *             If {@code spec} was null.
+     */
+    public JMenuItem[] addMenus( MenuSpec spec ) throws IllegalArgumentException {
+        if ( spec == null ) throw new IllegalArgumentException( "spec cannot be null!" );
+        
+        List< JMenuItem > items = new ArrayList<>();
+        for ( MenuSpec.Entry entry : spec.entries ) {
+            if ( entry.separator ) {
+                addSeparator( entry.location );
+                continue;
+            }
+            
+            JMenuItem item = addMenuItem( entry.location );
+            if ( entry.command != null ) item.setActionCommand( entry.command );
+            if ( entry.accelerator != null ) item.setAccelerator( entry.accelerator );
+            items.add( item );
+        }
+        
+        return items.toArray( new JMenuItem[ 0 ] );
+    }
+    
+    /**
+     * Gets a JMenu from the hierarchy. The menus are indexed by their text, so each menu in
+     * the location is found with a single lookup.
      * 
      * @param remove
      *            Is there an extra value at the end of the array?
@@ -184,31 +454,14 @@ public class SimpleFrame extends JFrame implements ActionListener, WindowListene
      * @return The desired child JMenu.
      */
     public JMenu getParent( boolean remove, String... location ) {
-        JMenu parent = getTopLevelMenu( location[ 0 ] ); // the parent of each step
+        MenuNode parent = getTopLevelMenu( location[ 0 ] ); // the parent of each step
         
-        // create the menus for the item
+        // find or create the menus for the item
         for ( int i = 1; i < ( location.length - ( remove ? 1 : 0 ) ); i++ ) {
-            
-            // try to find a pre-existing menu item
-            boolean exists = false;
-            
-            for ( int j = 0; j < parent.getItemCount(); j++ ) {
-                if ( parent.getItem( j ).getText().equalsIgnoreCase( location[ i ] ) ) {
-                    parent = ( JMenu ) parent.getItem( j );
-                    exists = true;
-                    break;
-                }
-            }
-            
-            // the menu hasn't been created, do so now
-            if ( !exists ) {
-                JMenu menu = new JMenu( location[ i ] ); // create a new menu
-                parent.add( menu ); // add the menu to the parent
-                parent = menu; // this is the new parent
-            }
+            parent = parent.getChild( location[ i ] );
         }
         
-        return parent;
+        return parent.menu;
     }
     
     /**
@@ -218,59 +471,109 @@ public class SimpleFrame extends JFrame implements ActionListener, WindowListene
      *            The text of the component.
      * @return The top level menu with the given text.
      */
-    private JMenu getTopLevelMenu( String name ) {
+    private MenuNode getTopLevelMenu( String name ) {
         if ( topLevelMenus.isEmpty() ) setJMenuBar( menuBar );
-        JMenu menu = topLevelMenus.get( name );
+        MenuNode node = topLevelMenus.get( name );
+        
+        // it may have been removed from the menu bar or renamed since
+        if ( ( node != null ) && ( ( node.menu.getParent() != menuBar ) || !name.equals( node.menu.getText() ) ) ) node = null;
+        
+        // it may have been added to the menu bar directly
+        for ( int i = 0; ( node == null ) && ( i < menuBar.getMenuCount() ); i++ ) {
+            JMenu menu = menuBar.getMenu( i );
+            if ( ( menu != null ) && name.equals( menu.getText() ) ) node = MenuNode.of( menu );
+        }
         
         // if the item doesn't exist, create it
-        if ( menu == null ) {
-            menu = new JMenu( name );
+        if ( node == null ) {
+            JMenu menu = new JMenu( name );
             menuBar.add( menu );
-            topLevelMenus.put( name, menu );
+            node = MenuNode.of( menu );
         }
         
-        return menu;
+        topLevelMenus.put( name, node );
+        return node;
     }
     
     //
     // Overrides
     //
     
+    /**
+     * Reports every menu item whose action command has no action method, the first time the
+     * frame is about to be shown and the menus are built.
+     */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        if ( actionsChecked ) return;
+        
+        actionsChecked = true;
+        for ( int i = 0; i < menuBar.getMenuCount(); i++ ) {
+            JMenu menu = menuBar.getMenu( i );
+            if ( menu != null ) checkActions( menu );
+        }
+    }
+    
+    /**
+     * Reports every menu item under the menu whose action command has no action method. Only
+     * items which call this frame's action methods are checked, items with their own
+     * listeners are left alone.
+     * 
+     * @param menu
+     *            The menu.
+     */
+    private void checkActions( JMenu menu ) {
+        for ( int i = 0; i < menu.getItemCount(); i++ ) {
+            JMenuItem item = menu.getItem( i );
+            if ( item == null ) continue; // a separator
+            
+            if ( item instanceof JMenu ) {
+                checkActions( ( JMenu ) item );
+            }
+            else if ( Arrays.asList( item.getActionListeners() ).contains( this ) && !dispatcher.hasAction( item.getActionCommand() ) ) {
+                System.err.println( "No method found in partial class by the name \"" + item.getActionCommand() + "\"!" );
+            }
+        }
+    }
+    
     @Override
     public void actionPerformed( ActionEvent e ) {
         String methodName = e.getActionCommand(); // the name of the method is defined by the action command
         
+        int policy = getActionPolicy( methodName );
+        if ( policy != FOREGROUND ) {
+            background.run( methodName, policy ); // off the event dispatch thread
+            return;
+        }
+        
         try {
-            
-            Method[] matchingMethods = getMatchingMethods( methodName ); // get methods with the correct name
-
-            Method method;
-            method = getNoParameters( matchingMethods ); // try to find a method with no parameters with the correct name
-            
-            if ( method != null ) {
-                method.invoke( this ); // invoke the method with no parameters
-                return;
-            }
-            
-            method = getFrameParameter( matchingMethods ); // try to find a method with a single parameter that is a subclass of SimpleFrame
-            
-            if ( method != null ) {
-                method.invoke( this, this ); // invoke the method with "this" as a parameter
-                return;
+            if ( !dispatcher.dispatch( this, methodName ) ) {
+                System.err.println( "No method found in partial class by the name \"" + methodName + "\"!" );
             }
-            
-            System.err.println( "No method found in partial class by the name \"" + methodName + "\"!" );
         }
-        catch ( IllegalAccessException | IllegalArgumentException | InvocationTargetException ex ) {
-            ex.printStackTrace();
+        catch ( Exception ex ) {
+            ex.printStackTrace(); // the action failed
         }
-
     }
 
     //
     // Useful Overrides (only if extensor uses them)
     //
     
+    /**
+     * Called on the event dispatch thread when a background action finishes, unless it was
+     * cancelled. Prints the stack trace of a failed action by default.
+     * 
+     * @param command
+     *            The action command.
+     * @param failure
+     *            What the action threw, or {@code null} if it succeeded.
+     */
+    protected void actionFinished( String command, Throwable failure ) {
+        if ( failure != null ) failure.printStackTrace();
+    }
+    
     @Override
     public void windowOpened( WindowEvent e ) {
     }
@@ -298,5 +601,165 @@ public class SimpleFrame extends JFrame implements ActionListener, WindowListene
     @Override
     public void windowDeactivated( WindowEvent e ) {
     }
+    
+    //
+    // Nested Classes
+    //
+    
+    /**
+     * A menu in the index, with the menus under it keyed by their text ignoring case. The
+     * menus under a menu are indexed again the next time one is looked up whenever items are
+     * added to or removed from the JMenu, or one of its menus is renamed, so the index always
+     * matches the JMenu even when it is changed directly. Each JMenu has at most one node,
+     * kept as a client property, so it's never listened to twice.
+     * 
+     * @author Austin
+     */
+    private static final class MenuNode implements ContainerListener, PropertyChangeListener {
+        
+        //
+        // Fields
+        //
+        
+        /** The menu. */
+        final JMenu                           menu;
+        
+        /** The menus under this one, by their case folded text. */
+        private final Map< String, MenuNode > children = new HashMap<>();
+        
+        /** If {@code children} matches the menus in the JMenu. */
+        private boolean                       indexed;
+        
+        //
+        // Constructors
+        //
+        
+        /**
+         * Creates a new MenuNode.
+         * 
+         * @param menu
+         *            The menu.
+         */
+        private MenuNode( JMenu menu ) {
+            this.menu = menu;
+            menu.getPopupMenu().addContainerListener( this );
+        }
+        
+        //
+        // Getters
+        //
+        
+        /**
+         * Gets the node of a menu, creating it the first time.
+         * 
+         * @param menu
+         *            The menu.
+         * @return The menu's node.
+         */
+        public static MenuNode of( JMenu menu ) {
+            MenuNode node = ( MenuNode ) menu.getClientProperty( MenuNode.class );
+            
+            if ( node == null ) {
+                node = new MenuNode( menu );
+                menu.putClientProperty( MenuNode.class, node );
+            }
+            
+            return node;
+        }
+        
+        //
+        // Actions
+        //
+        
+        /**
+         * Gets the menu under this one with the given text, ignoring case. If it does not
+         * exist it will be created.
+         * 
+         * @param text
+         *            The text of the menu.
+         * @return The menu with the given text.
+         */
+        public MenuNode getChild( String text ) {
+            if ( !indexed ) index();
+            
+            String key = fold( text );
+            MenuNode child = children.get( key );
+            
+            // the menu hasn't been created, do so now
+            if ( child == null ) {
+                JMenu created = new JMenu( text );
+                menu.add( created );
+                children.put( key, child = of( created ) );
+                
+                created.addPropertyChangeListener( "text", this );
+                indexed = true; // adding it marked the index stale, but it's already in it
+            }
+            
+            return child;
+        }
+        
+        /**
+         * Indexes the menus in the JMenu, replacing the old index.
+         */
+        private void index() {
+            // menus which have been removed shouldn't keep this one around
+            for ( MenuNode child : children.values() ) {
+                child.menu.removePropertyChangeListener( "text", this );
+            }
+            children.clear();
+            
+            for ( int i = 0; i < menu.getItemCount(); i++ ) {
+                JMenuItem item = menu.getItem( i );
+                if ( !( item instanceof JMenu ) ) continue; // separators are null, and plain items can't hold anything
+                
+                String key = fold( item.getText() );
+                if ( children.containsKey( key ) ) continue; // the first one is found first
+                
+                children.put( key, of( ( JMenu ) item ) );
+                item.addPropertyChangeListener( "text", this );
+            }
+            
+            indexed = true;
+        }
+        
+        /**
+         * Folds the case of each character the same way {@link String#equalsIgnoreCase(String)}
+         * compares them, so two texts fold to the same string if they are equal ignoring case.
+         * 
+         * @param text
+         *            The text.
+         * @return The folded text.
+         */
+        private static String fold( String text ) {
+            if ( text == null ) return "";
+            
+            char[] chars = text.toCharArray();
+            for ( int i = 0; i < chars.length; i++ ) {
+                chars[ i ] = Character.toLowerCase( Character.toUpperCase( chars[ i ] ) );
+            }
+            
+            return new String( chars );
+        }
+        
+        //
+        // Overrides
+        //
+        
+        @Override
+        public void componentAdded( ContainerEvent e ) {
+            if ( e.getChild() instanceof JMenu ) indexed = false; // plain items and separators aren't indexed
+        }
+        
+        @Override
+        public void componentRemoved( ContainerEvent e ) {
+            if ( e.getChild() instanceof JMenu ) indexed = false;
+        }
+        
+        @Override
+        public void propertyChange( PropertyChangeEvent e ) {
+            indexed = false; // one of its menus was renamed
+        }
+        
+    }
 
 }
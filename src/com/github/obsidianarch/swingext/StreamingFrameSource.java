@@ -0,0 +1,277 @@
+package com.github.obsidianarch.swingext;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Decodes an animation while it plays. The first frame is decoded straight away and a
+ * background thread decodes ahead of playback into a fixed size ring of frames, so only a
+ * handful of frames are ever held in memory. Animations with no more frames than the ring
+ * holds are decoded once and then kept. The file stays open until the source is closed.
+ *
+ * @author Austin
+ */
+public class StreamingFrameSource implements FrameSource {
+
+    //
+    // Constants
+    //
+
+    /** The default number of frames decoded ahead of playback. */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    //
+    // Fields
+    //
+
+    /** Decodes the frames, only ever used by the decoding thread after construction. */
+    private final FrameDecoder    decoder;
+
+    /** The decoded frames, the frame decoded in sequence {@code s} is in slot {@code s % capacity}. */
+    private final BufferedImage[] ring;
+
+    /** The index of the frame in each slot of the ring. */
+    private final int[]           ringIndices;
+
+    /** The decode sequence of the frame in each slot of the ring. */
+    private final long[]          ringSequences;
+
+    /** The width of every frame. */
+    private final int             width;
+
+    /** The height of every frame. */
+    private final int             height;
+
+    /** The sequence of the next frame to be decoded. */
+    private long                  decodedSequence;
+
+    /** The sequence of the frame most recently handed out, every earlier frame may be dropped. */
+    private long                  consumedSequence;
+
+    /** The delay of every frame decoded so far, which is a lot smaller than the frames. */
+    private int[]                 delays     = new int[ 64 ];
+
+    /** The number of frames, {@code -1} until the end of the file is reached. */
+    private int                   frameCount = -1;
+
+    /** If the source has been closed. */
+    private boolean               closed;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Opens the file and decodes its first frame with the default capacity.
+     *
+     * @param f
+     *            The file to read.
+     * @throws IOException
+     *             If the file could not be read.
+     * @throws NoSuchElementException
+     *             If there were no available ImageReaders for the file.
+     */
+    public StreamingFrameSource( File f ) throws IOException, NoSuchElementException {
+        this( f, DEFAULT_CAPACITY );
+    }
+
+    /**
+     * Opens the file and decodes its first frame.
+     *
+     * @param f
+     *            The file to read.
+     * @param capacity
+     *            The number of frames decoded ahead of playback.
+     * @throws IOException
+     *             If the file could not be read.
+     * @throws NoSuchElementException
+     *             If there were no available ImageReaders for the file.
+     * @throws IllegalArgumentException
+     *             If {@code capacity} was less than 2.
+     */
+    public StreamingFrameSource( File f, int capacity ) throws IOException, NoSuchElementException, IllegalArgumentException {
+        if ( capacity < 2 ) throw new IllegalArgumentException( "capacity must be at least 2!" );
+
+        ring = new BufferedImage[ capacity ];
+        ringIndices = new int[ capacity ];
+        ringSequences = new long[ capacity ];
+        Arrays.fill( ringIndices, -1 );
+
+        decoder = new FrameDecoder( f );
+        try {
+            BufferedImage first = decoder.next();
+            if ( first == null ) throw new IOException( "No frames in " + f );
+
+            width = first.getWidth();
+            height = first.getHeight();
+
+            store( first, 0, decoder.getDelay() );
+        }
+        catch ( IOException | RuntimeException e ) {
+            decoder.close();
+            throw e;
+        }
+
+        Thread thread = new Thread( new Runnable() {
+
+            @Override
+            public void run() {
+                decodeAhead();
+            }
+
+        } );
+        thread.setName( "Frame Decoder" );
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+    //
+    // Actions
+    //
+
+    /**
+     * Puts a decoded frame into the next slot of the ring.
+     *
+     * @param frame
+     *            The decoded frame.
+     * @param index
+     *            The index of the frame.
+     * @param delay
+     *            How long the frame is shown for.
+     */
+    private synchronized void store( BufferedImage frame, int index, int delay ) {
+        int slot = ( int ) ( decodedSequence % ring.length );
+
+        ring[ slot ] = frame;
+        ringIndices[ slot ] = index;
+        ringSequences[ slot ] = decodedSequence;
+
+        if ( index >= delays.length ) delays = Arrays.copyOf( delays, Math.max( delays.length * 2, index + 1 ) );
+        delays[ index ] = delay;
+
+        decodedSequence++;
+        notifyAll();
+    }
+
+    /**
+     * Waits until there is room in the ring for another frame.
+     *
+     * @return {@code false} if the source was closed while waiting.
+     * @throws InterruptedException
+     *             If the thread was interrupted while waiting.
+     */
+    private synchronized boolean awaitRoom() throws InterruptedException {
+        while ( !closed && ( ( decodedSequence >= ( consumedSequence + ring.length ) ) || isFullyDecoded() ) ) {
+            wait();
+        }
+
+        return !closed;
+    }
+
+    /**
+     * Decodes frames into the ring as fast as playback makes room for them, going back to the
+     * start of the file after the last frame. Run on the decoding thread until the source is
+     * closed.
+     */
+    private void decodeAhead() {
+        try {
+            int index = 1; // the first frame was decoded by the constructor
+
+            while ( awaitRoom() ) {
+                BufferedImage frame = decoder.next();
+
+                if ( frame == null ) {
+                    // we've reached the end of the file, loop back to the first frame
+                    synchronized ( this ) {
+                        if ( frameCount < 0 ) frameCount = index;
+                        notifyAll();
+                    }
+                    decoder.rewind();
+                    index = 0;
+                    continue;
+                }
+
+                store( frame, index++, decoder.getDelay() );
+            }
+        }
+        catch ( IOException e ) {
+            e.printStackTrace();
+        }
+        catch ( InterruptedException e ) {
+            // stop decoding
+        }
+        finally {
+            try {
+                decoder.close();
+            }
+            catch ( IOException e ) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * @return If every frame is in the ring, in which case they never need to be decoded again.
+     */
+    private boolean isFullyDecoded() {
+        return ( frameCount >= 0 ) && ( frameCount <= ring.length ) && ( decodedSequence >= frameCount );
+    }
+
+    //
+    // Overrides
+    //
+
+    @Override
+    public synchronized int getFrameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public synchronized BufferedImage getFrame( int index ) {
+        for ( int slot = 0; slot < ring.length; slot++ ) {
+            if ( ringIndices[ slot ] != index ) continue;
+
+            // everything decoded before this frame can be dropped
+            consumedSequence = Math.max( consumedSequence, ringSequences[ slot ] );
+            notifyAll();
+
+            return ring[ slot ];
+        }
+
+        // the frame hasn't been decoded yet, so every frame in the ring is behind it
+        consumedSequence = decodedSequence;
+        notifyAll();
+
+        return null;
+    }
+
+    /**
+     * Gets a frame's delay, frames which haven't been decoded yet are given the
+     * {@link FrameRegion#DEFAULT_DELAY}.
+     */
+    @Override
+    public synchronized int getDelay( int index ) {
+        if ( ( index < 0 ) || ( index >= delays.length ) || ( delays[ index ] == 0 ) ) return FrameRegion.DEFAULT_DELAY;
+        return delays[ index ];
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+}
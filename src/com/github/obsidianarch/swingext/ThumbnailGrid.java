@@ -0,0 +1,692 @@
+package com.github.obsidianarch.swingext;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.ImageIO;
+import javax.swing.JComponent;
+import javax.swing.JViewport;
+import javax.swing.LookAndFeel;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * A grid of thumbnails for browsing many image files, meant to be put in a JScrollPane. Only
+ * the visible cells are painted and only their thumbnails are decoded, in the background and
+ * at the lowest resolution which still fills the thumbnail, so the grid scrolls smoothly
+ * through any number of files. The most recently shown thumbnails are kept in memory, and
+ * can also be kept on disk so they don't have to be decoded again next time.
+ *
+ * @author Austin
+ */
+public class ThumbnailGrid extends JComponent implements Scrollable {
+
+    //
+    // Constants
+    //
+
+    /** The default width and height of a thumbnail, in pixels. */
+    public static final int  DEFAULT_THUMBNAIL_SIZE = 128;
+
+    /** The default number of thumbnails kept in memory. */
+    public static final int  DEFAULT_CACHE_SIZE     = 1000;
+
+    /** The space around each thumbnail, in pixels. */
+    private static final int PADDING                = 8;
+
+    /** Decodes the thumbnails, shared by every ThumbnailGrid. */
+    private static final ExecutorService EXECUTOR               = Executors.newFixedThreadPool( Math.max( 1, Runtime.getRuntime().availableProcessors() / 2 ), new ThreadFactory() {
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread thread = new Thread( r );
+            thread.setName( "Thumbnail Loader" );
+            thread.setDaemon( true );
+            thread.setPriority( Thread.MIN_PRIORITY ); // scrolling comes first
+            return thread;
+        }
+
+    } );
+
+    //
+    // Fields
+    //
+
+    /** The files shown in the grid. */
+    private List< File >                     files          = Collections.emptyList();
+
+    /** The most recently shown thumbnails, iterated from least to most recently used. */
+    private final Map< File, BufferedImage > thumbnails     = new LinkedHashMap<>( 16, 0.75f, true );
+
+    /** The file names under the most recently shown thumbnails, cut short to fit. */
+    private final Map< File, String >        labels         = new LinkedHashMap<>( 16, 0.75f, true );
+
+    /** The files whose thumbnails are being decoded. */
+    private final Set< File >                requested      = new HashSet<>();
+
+    /** The files which could not be decoded, they aren't tried again. */
+    private final Set< File >                failed         = new HashSet<>();
+
+    /** The files in the visible cells, a thumbnail which scrolled out of view isn't decoded. */
+    private volatile Set< File >             visible        = Collections.emptySet();
+
+    /** The width and height of a thumbnail. */
+    private int                              thumbnailSize  = DEFAULT_THUMBNAIL_SIZE;
+
+    /** The most thumbnails kept in memory. */
+    private int                              cacheSize      = DEFAULT_CACHE_SIZE;
+
+    /** The directory the thumbnails are kept in on disk, may be {@code null}. */
+    private volatile File                    diskCache;
+
+    /** The viewport the grid is in, {@code null} if it isn't in one. */
+    private JViewport                        viewport;
+
+    /** Asks for the visible thumbnails whenever the viewport scrolls or is resized. */
+    private final ChangeListener             scrollListener = new ChangeListener() {
+
+        @Override
+        public void stateChanged( ChangeEvent e ) {
+            requestVisible();
+        }
+
+    };
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a new, empty ThumbnailGrid.
+     */
+    public ThumbnailGrid() {
+        setOpaque( true );
+        updateUI();
+
+        // also covers a grid which isn't in a viewport
+        addComponentListener( new ComponentAdapter() {
+
+            @Override
+            public void componentResized( ComponentEvent e ) {
+                requestVisible();
+            }
+
+        } );
+    }
+
+    //
+    // Setters
+    //
+
+    /**
+     * Shows the given files in the grid, in order.
+     *
+     * @param files
+     *            The image files.
+     * @throws IllegalArgumentException
+     *             If {@code files} was null.
+     */
+    public void setFiles( List< File > files ) throws IllegalArgumentException {
+        if ( files == null ) throw new IllegalArgumentException( "files cannot be null!" );
+
+        this.files = files;
+        visible = Collections.emptySet();
+
+        revalidate();
+        repaint();
+        requestVisibleLater();
+    }
+
+    /**
+     * Changes the size of the thumbnails, every thumbnail is decoded again at the new size.
+     *
+     * @param size
+     *            The new width and height of a thumbnail, in pixels.
+     * @throws IllegalArgumentException
+     *             If {@code size} was not positive.
+     */
+    public void setThumbnailSize( int size ) throws IllegalArgumentException {
+        if ( size <= 0 ) throw new IllegalArgumentException( "size must be positive!" );
+
+        thumbnailSize = size;
+        thumbnails.clear();
+        labels.clear();
+        failed.clear();
+
+        revalidate();
+        repaint();
+        requestVisibleLater();
+    }
+
+    /**
+     * Changes the most thumbnails kept in memory, the least recently shown are dropped first.
+     *
+     * @param size
+     *            The most thumbnails.
+     * @throws IllegalArgumentException
+     *             If {@code size} was negative.
+     */
+    public void setCacheSize( int size ) throws IllegalArgumentException {
+        if ( size < 0 ) throw new IllegalArgumentException( "size cannot be negative!" );
+
+        cacheSize = size;
+        trim();
+    }
+
+    /**
+     * Keeps the thumbnails in a directory on disk, so they don't have to be decoded again
+     * when the files are next shown. A thumbnail is decoded again if its file changes.
+     *
+     * @param directory
+     *            The directory, or {@code null} to only keep them in memory.
+     */
+    public void setDiskCache( File directory ) {
+        diskCache = directory;
+    }
+
+    //
+    // Getters
+    //
+
+    /**
+     * @return The files shown in the grid.
+     */
+    public List< File > getFiles() {
+        return files;
+    }
+
+    /**
+     * @return The width and height of a thumbnail, in pixels.
+     */
+    public int getThumbnailSize() {
+        return thumbnailSize;
+    }
+
+    /**
+     * @return The most thumbnails kept in memory.
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * @return The directory the thumbnails are kept in on disk, or {@code null} if they are
+     *         only kept in memory.
+     */
+    public File getDiskCache() {
+        return diskCache;
+    }
+
+    /**
+     * Gets the file whose cell is at the given point.
+     *
+     * @param x
+     *            The x coordinate, relative to the grid.
+     * @param y
+     *            The y coordinate, relative to the grid.
+     * @return The file, or {@code null} if there isn't a cell there.
+     */
+    public File getFileAt( int x, int y ) {
+        int column = x / getCellWidth();
+        if ( ( x < 0 ) || ( column >= getColumns() ) ) return null;
+
+        int index = ( ( y / getCellHeight() ) * getColumns() ) + column;
+        return ( ( y < 0 ) || ( index >= files.size() ) ) ? null : files.get( index );
+    }
+
+    /**
+     * @return The number of cells across, as many as fit in the width of the viewport, or of
+     *         the grid if it isn't in one.
+     */
+    private int getColumns() {
+        int width = ( viewport != null ) ? viewport.getExtentSize().width : getWidth();
+        return Math.max( 1, width / getCellWidth() );
+    }
+
+    /**
+     * @return The width of a cell.
+     */
+    private int getCellWidth() {
+        return thumbnailSize + ( 2 * PADDING );
+    }
+
+    /**
+     * @return The height of a cell, including the file name under the thumbnail.
+     */
+    private int getCellHeight() {
+        return thumbnailSize + ( 2 * PADDING ) + getFontMetrics( getFont() ).getHeight();
+    }
+
+    /**
+     * Gets the file name shown under a file's thumbnail, cut short with an ellipsis if it's
+     * wider than the thumbnail. It's only worked out once for each file.
+     *
+     * @param file
+     *            The file.
+     * @param metrics
+     *            The metrics of the grid's font.
+     * @return The file name, cut short to fit.
+     */
+    private String getLabel( File file, FontMetrics metrics ) {
+        String label = labels.get( file );
+        if ( label != null ) return label;
+
+        label = file.getName();
+        if ( metrics.stringWidth( label ) > thumbnailSize ) {
+            // find the longest start of the name which fits with the ellipsis after it
+            int low = 0;
+            int high = label.length() - 1;
+            while ( low < high ) {
+                int mid = ( low + high + 1 ) >>> 1;
+
+                if ( metrics.stringWidth( label.substring( 0, mid ) + '\u2026' ) <= thumbnailSize ) {
+                    low = mid;
+                }
+                else {
+                    high = mid - 1;
+                }
+            }
+
+            if ( ( low > 0 ) && Character.isHighSurrogate( label.charAt( low - 1 ) ) ) low--; // don't split a character
+            label = label.substring( 0, low ) + '\u2026';
+        }
+
+        labels.put( file, label );
+        trim();
+        return label;
+    }
+
+    //
+    // Actions
+    //
+
+    /**
+     * Starts decoding the thumbnail of a file in the background, unless it is already being
+     * decoded.
+     *
+     * @param file
+     *            The file.
+     */
+    private void request( final File file ) {
+        if ( !requested.add( file ) ) return;
+
+        final int                   size = thumbnailSize;
+        final GraphicsConfiguration gc   = getGraphicsConfiguration();
+        EXECUTOR.execute( new Runnable() {
+
+            @Override
+            public void run() {
+                // the user may have scrolled past it already
+                final BufferedImage thumbnail = visible.contains( file ) ? load( file, size, gc ) : null;
+
+                SwingUtilities.invokeLater( new Runnable() {
+
+                    @Override
+                    public void run() {
+                        requested.remove( file );
+                        if ( size != thumbnailSize ) return; // it's the wrong size now
+
+                        if ( thumbnail != null ) {
+                            thumbnails.put( file, thumbnail );
+                            trim();
+                            repaint();
+                        }
+                        else if ( visible.contains( file ) ) {
+                            failed.add( file );
+                            repaint();
+                        }
+                    }
+
+                } );
+            }
+
+        } );
+    }
+
+    /**
+     * Gets the thumbnail of a file from the disk cache, or decodes it if it isn't there.
+     * Called on a loader thread.
+     *
+     * @param file
+     *            The file.
+     * @param size
+     *            The width and height of the thumbnail.
+     * @param gc
+     *            The configuration of the screen the thumbnail is shown on, may be
+     *            {@code null}.
+     * @return The thumbnail, or {@code null} if the file could not be decoded.
+     */
+    private BufferedImage load( File file, int size, GraphicsConfiguration gc ) {
+        File cached = getDiskCacheFile( file, size );
+        try {
+            if ( ( cached != null ) && cached.isFile() ) {
+                BufferedImage thumbnail = ImageIO.read( cached );
+                if ( thumbnail != null ) return CompatibleImages.convert( thumbnail, gc );
+            }
+        }
+        catch ( IOException e ) {
+            e.printStackTrace(); // decode it again instead
+        }
+
+        BufferedImage thumbnail;
+        try {
+            thumbnail = decode( file, size, gc );
+        }
+        catch ( IOException | NoSuchElementException e ) {
+            return null; // not an image we can read
+        }
+
+        if ( cached != null ) save( thumbnail, cached );
+
+        return thumbnail;
+    }
+
+    /**
+     * Writes a thumbnail to the disk cache. It is written to a temporary file first and moved
+     * into place, so a crash or another grid writing the same thumbnail never leaves a
+     * truncated file behind.
+     *
+     * @param thumbnail
+     *            The thumbnail.
+     * @param cached
+     *            The thumbnail's file.
+     */
+    private static void save( BufferedImage thumbnail, File cached ) {
+        File temp = null;
+        try {
+            cached.getParentFile().mkdirs();
+            temp = File.createTempFile( cached.getName(), ".tmp", cached.getParentFile() );
+            if ( !ImageIO.write( thumbnail, "png", temp ) ) throw new IOException( "No PNG writer" );
+
+            try {
+                Files.move( temp.toPath(), cached.toPath(), StandardCopyOption.ATOMIC_MOVE );
+            }
+            catch ( AtomicMoveNotSupportedException e ) {
+                Files.move( temp.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            }
+        }
+        catch ( IOException e ) {
+            e.printStackTrace();
+            if ( temp != null ) temp.delete();
+        }
+    }
+
+    /**
+     * Decodes the first frame of a file, only decoding as many pixels as the thumbnail needs,
+     * and scales it to fit the thumbnail.
+     *
+     * @param file
+     *            The file.
+     * @param size
+     *            The width and height of the thumbnail.
+     * @param gc
+     *            The configuration of the screen the thumbnail is shown on, may be
+     *            {@code null}.
+     * @return The thumbnail.
+     * @throws IOException
+     *             If the file could not be read.
+     * @throws NoSuchElementException
+     *             If there were no available ImageReaders for the file.
+     */
+    private static BufferedImage decode( File file, int size, GraphicsConfiguration gc ) throws IOException, NoSuchElementException {
+        try ( FrameDecoder decoder = new FrameDecoder( file ) ) {
+            int width = decoder.getCanvasWidth();
+            int height = decoder.getCanvasHeight();
+            double scale = Math.min( 1, Math.min( ( double ) size / width, ( double ) size / height ) );
+
+            decoder.setSubsampling( Math.max( 1, ( int ) Math.floor( 1 / scale ) ) );
+            BufferedImage frame = decoder.next();
+            if ( frame == null ) throw new IOException( "No frames in " + file );
+
+            int outWidth = ( int ) Math.round( width * scale );
+            int outHeight = ( int ) Math.round( height * scale );
+            return ImageView.SCALER.scale( frame, CompatibleImages.createScaled( gc, frame, outWidth, outHeight ), null );
+        }
+    }
+
+    /**
+     * Asks for the visible thumbnails once the grid has been laid out again.
+     */
+    private void requestVisibleLater() {
+        SwingUtilities.invokeLater( new Runnable() {
+
+            @Override
+            public void run() {
+                requestVisible();
+            }
+
+        } );
+    }
+
+    /**
+     * Asks for the thumbnails of the visible cells which aren't in memory to be decoded, and
+     * forgets about the ones which have scrolled out of view. Called whenever the visible
+     * cells change, never while painting.
+     */
+    private void requestVisible() {
+        Rectangle view = getVisibleRect();
+        if ( view.isEmpty() ) return;
+
+        int columns = getColumns();
+        int firstIndex = ( view.y / getCellHeight() ) * columns;
+        int lastIndex = Math.min( files.size() - 1, ( ( ( view.y + view.height - 1 ) / getCellHeight() ) * columns ) + columns - 1 );
+
+        Set< File > shown = new HashSet<>();
+        for ( int index = firstIndex; index <= lastIndex; index++ ) {
+            shown.add( files.get( index ) );
+        }
+        visible = shown;
+
+        for ( File file : shown ) {
+            if ( !thumbnails.containsKey( file ) && !failed.contains( file ) ) request( file );
+        }
+    }
+
+    /**
+     * Drops the least recently shown thumbnails and file names until there are no more than
+     * the cache size of each.
+     */
+    private void trim() {
+        Iterator< BufferedImage > it = thumbnails.values().iterator();
+        while ( ( thumbnails.size() > cacheSize ) && it.hasNext() ) {
+            it.next();
+            it.remove();
+        }
+
+        Iterator< String > labelIt = labels.values().iterator();
+        while ( ( labels.size() > cacheSize ) && labelIt.hasNext() ) {
+            labelIt.next();
+            labelIt.remove();
+        }
+    }
+
+    /**
+     * Gets the file a thumbnail is kept in on disk, named after the file's path, modification
+     * time and length, and the thumbnail size.
+     *
+     * @param file
+     *            The image file.
+     * @param size
+     *            The width and height of the thumbnail.
+     * @return The thumbnail's file, or {@code null} if thumbnails aren't kept on disk.
+     */
+    private File getDiskCacheFile( File file, int size ) {
+        File directory = diskCache;
+        if ( directory == null ) return null;
+
+        try {
+            String key = file.getCanonicalPath() + '|' + file.lastModified() + '|' + file.length() + '|' + size;
+            byte[] digest = MessageDigest.getInstance( "SHA-1" ).digest( key.getBytes( StandardCharsets.UTF_8 ) );
+
+            StringBuilder name = new StringBuilder();
+            for ( byte b : digest ) {
+                name.append( String.format( "%02x", b ) );
+            }
+            return new File( directory, name.append( ".png" ).toString() );
+        }
+        catch ( IOException | NoSuchAlgorithmException e ) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    //
+    // Overrides
+    //
+
+    /**
+     * Takes the colours and font of a list from the look and feel.
+     */
+    @Override
+    public void updateUI() {
+        super.updateUI();
+        LookAndFeel.installColorsAndFont( this, "List.background", "List.foreground", "List.font" );
+    }
+
+    /**
+     * Changes the font, the file names are cut short again to fit in the new font.
+     */
+    @Override
+    public void setFont( Font font ) {
+        super.setFont( font );
+        labels.clear();
+    }
+
+    /**
+     * Listens to the viewport the grid was added to, if it was added to one.
+     */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+
+        if ( getParent() instanceof JViewport ) {
+            viewport = ( JViewport ) getParent();
+            viewport.addChangeListener( scrollListener );
+        }
+    }
+
+    @Override
+    public void removeNotify() {
+        if ( viewport != null ) viewport.removeChangeListener( scrollListener );
+        viewport = null;
+
+        super.removeNotify();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if ( isPreferredSizeSet() ) return super.getPreferredSize();
+
+        int columns = getColumns();
+        int rows = ( files.size() + columns - 1 ) / columns;
+        return new Dimension( columns * getCellWidth(), rows * getCellHeight() );
+    }
+
+    /**
+     * Paints the cells in the clip.
+     */
+    @Override
+    protected void paintComponent( Graphics g ) {
+        Rectangle clip = g.getClipBounds();
+        if ( clip == null ) clip = new Rectangle( getWidth(), getHeight() );
+
+        g.setColor( getBackground() );
+        g.fillRect( clip.x, clip.y, clip.width, clip.height );
+
+        int columns = getColumns();
+        int cellWidth = getCellWidth();
+        int cellHeight = getCellHeight();
+        FontMetrics metrics = g.getFontMetrics( getFont() );
+
+        // only the cells in the clip are painted, everything else is skipped
+        int firstRow = Math.max( 0, clip.y / cellHeight );
+        int lastRow = ( clip.y + clip.height - 1 ) / cellHeight;
+        int firstColumn = Math.max( 0, clip.x / cellWidth );
+        int lastColumn = Math.min( columns - 1, ( clip.x + clip.width - 1 ) / cellWidth );
+
+        for ( int row = firstRow; row <= lastRow; row++ ) {
+            for ( int column = firstColumn; column <= lastColumn; column++ ) {
+                int index = ( row * columns ) + column;
+                if ( index >= files.size() ) break;
+
+                File file = files.get( index );
+
+                int x = column * cellWidth;
+                int y = row * cellHeight;
+
+                BufferedImage thumbnail = thumbnails.get( file );
+                if ( thumbnail != null ) {
+                    g.drawImage( thumbnail, x + ( ( cellWidth - thumbnail.getWidth() ) / 2 ), y + PADDING + ( ( thumbnailSize - thumbnail.getHeight() ) / 2 ), null );
+                }
+                else {
+                    g.setColor( failed.contains( file ) ? Color.PINK : Color.LIGHT_GRAY );
+                    g.drawRect( x + PADDING, y + PADDING, thumbnailSize - 1, thumbnailSize - 1 );
+                }
+
+                // the file name under the thumbnail, cut short if it doesn't fit
+                String name = getLabel( file, metrics );
+                g.setColor( getForeground() );
+                g.drawString( name, x + ( ( cellWidth - metrics.stringWidth( name ) ) / 2 ), y + PADDING + thumbnailSize + PADDING + metrics.getAscent() );
+            }
+        }
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement( Rectangle visibleRect, int orientation, int direction ) {
+        return ( orientation == SwingConstants.VERTICAL ) ? getCellHeight() / 4 : getCellWidth() / 4;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement( Rectangle visibleRect, int orientation, int direction ) {
+        return ( orientation == SwingConstants.VERTICAL ) ? visibleRect.height : visibleRect.width;
+    }
+
+    /**
+     * The cells wrap to the width of the viewport, so the grid only scrolls vertically.
+     */
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+
+}
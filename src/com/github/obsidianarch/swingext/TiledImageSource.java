@@ -0,0 +1,512 @@
+package com.github.obsidianarch.swingext;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * Decodes an image a tile at a time, for images too large to decode into a single
+ * BufferedImage. Only the tiles covering the visible region are decoded, each with
+ * {@link ImageReadParam#setSourceRegion(Rectangle)}, and zoomed out tiles are decoded with
+ * subsampling so they hold no more pixels than the screen shows. Tiles are kept in a
+ * least-recently-used cache with a byte budget, and the tiles just past the visible region
+ * in the direction it last moved are decoded ahead of time. Until a tile is decoded, that
+ * part of the image is covered by a low resolution overview of the whole image.
+ *
+ * @author Austin
+ */
+public class TiledImageSource implements Closeable {
+
+    //
+    // Constants
+    //
+
+    /** The width and height of each decoded tile, in pixels. */
+    public static final int  TILE_SIZE       = 512;
+
+    /** The default budget of the tile cache, in bytes. */
+    public static final long DEFAULT_BUDGET  = 128L * 1024 * 1024;
+
+    /** The most pixels in the overview. */
+    private static final int OVERVIEW_PIXELS = 512 * 512;
+
+    /** Stands in for the overview in the tiles to decode. */
+    private static final Key OVERVIEW        = new Key( 0, 0, 0 );
+
+    //
+    // Fields
+    //
+
+    /** The stream the image is read from. */
+    private final ImageInputStream          stream;
+
+    /** Reads the tiles from the stream, only the decoding thread reads with it after construction. */
+    private final ImageReader               reader;
+
+    /** The width of the image. */
+    private final int                       width;
+
+    /** The height of the image. */
+    private final int                       height;
+
+    /** The decoded tiles, iterated from least to most recently used. */
+    private final Map< Key, BufferedImage > tiles     = new LinkedHashMap<>( 16, 0.75f, true );
+
+    /** The tiles to decode, in the order to decode them. */
+    private final List< Key >               wanted    = new ArrayList<>();
+
+    /** Told whenever a tile or the overview has been decoded. */
+    private final List< ChangeListener >    listeners = new CopyOnWriteArrayList<>();
+
+    /** The whole image at a low resolution, {@code null} until it is decoded. */
+    private volatile BufferedImage          overview;
+
+    /** The region of the image which was last visible. */
+    private Rectangle                       visible;
+
+    /** The most bytes the tile cache may hold. */
+    private long                            budget    = DEFAULT_BUDGET;
+
+    /** The bytes currently held by the tile cache. */
+    private long                            size;
+
+    /** If the overview is being decoded, it is given up on when tiles are wanted. */
+    private boolean                         decodingOverview;
+
+    /** If the source has been closed. */
+    private boolean                         closed;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Opens the file, nothing is decoded until it is asked for.
+     *
+     * @param f
+     *            The file to read.
+     * @throws IOException
+     *             If the file could not be opened.
+     * @throws NoSuchElementException
+     *             If there were no available ImageReaders for the file.
+     */
+    public TiledImageSource( File f ) throws IOException, NoSuchElementException {
+        stream = ImageIO.createImageInputStream( f );
+        if ( stream == null ) throw new IOException( "Could not open " + f );
+
+        try {
+            reader = ImageIO.getImageReaders( stream ).next(); // get the image reader
+            reader.setInput( stream );
+
+            width = reader.getWidth( 0 );
+            height = reader.getHeight( 0 );
+        }
+        catch ( IOException | RuntimeException e ) {
+            stream.close();
+            throw e;
+        }
+
+        Thread thread = new Thread( new Runnable() {
+
+            @Override
+            public void run() {
+                decodeTiles();
+            }
+
+        } );
+        thread.setName( "Tile Decoder" );
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+    //
+    // Setters
+    //
+
+    /**
+     * Changes the most bytes the tile cache may hold, evicting tiles if it now holds too
+     * many.
+     *
+     * @param budget
+     *            The new budget, in bytes.
+     * @throws IllegalArgumentException
+     *             If {@code budget} was negative.
+     */
+    public synchronized void setBudget( long budget ) throws IllegalArgumentException {
+        if ( budget < 0 ) throw new IllegalArgumentException( "budget cannot be negative!" );
+
+        this.budget = budget;
+        trim();
+    }
+
+    /**
+     * Asks for the tiles covering a region of the image to be decoded, replacing the tiles
+     * asked for before. The tiles next to the region, in the direction it moved since the
+     * last call, are decoded after it.
+     *
+     * @param region
+     *            The visible region of the image, in full resolution pixels.
+     * @param period
+     *            The subsampling the tiles are decoded with.
+     */
+    public synchronized void setVisibleRegion( Rectangle region, int period ) {
+        Rectangle bounds = new Rectangle( width, height );
+        region = region.intersection( bounds );
+
+        // work out which way the view is panning
+        int dx = 0, dy = 0;
+        if ( visible != null ) {
+            dx = Integer.signum( ( int ) ( region.getCenterX() - visible.getCenterX() ) );
+            dy = Integer.signum( ( int ) ( region.getCenterY() - visible.getCenterY() ) );
+        }
+        visible = region;
+
+        wanted.clear();
+        addTiles( region, period );
+        if ( ( dx != 0 ) || ( dy != 0 ) ) {
+            Rectangle ahead = new Rectangle( region.x + ( dx * region.width ), region.y + ( dy * region.height ), region.width, region.height );
+            addTiles( ahead.intersection( bounds ), period );
+        }
+
+        if ( decodingOverview && !wanted.isEmpty() ) {
+            decodingOverview = false;
+            reader.abort(); // the visible tiles come first, the overview is started again later
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Adds a listener which is told whenever a tile or the overview has been decoded, on the
+     * decoding thread.
+     *
+     * @param listener
+     *            The listener.
+     */
+    public void addChangeListener( ChangeListener listener ) {
+        listeners.add( listener );
+    }
+
+    /**
+     * @param listener
+     *            The listener to remove.
+     */
+    public void removeChangeListener( ChangeListener listener ) {
+        listeners.remove( listener );
+    }
+
+    //
+    // Getters
+    //
+
+    /**
+     * @return The width of the image.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The height of the image.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets a decoded tile. The tile at column {@code c} and row {@code r} covers the full
+     * resolution pixels from {@code c * TILE_SIZE * period} to
+     * {@code (c + 1) * TILE_SIZE * period} across, and likewise down.
+     *
+     * @param period
+     *            The subsampling the tile was decoded with.
+     * @param column
+     *            The column of the tile.
+     * @param row
+     *            The row of the tile.
+     * @return The tile, or {@code null} if it hasn't been decoded.
+     */
+    public synchronized BufferedImage getTile( int period, int column, int row ) {
+        return tiles.get( new Key( period, column, row ) );
+    }
+
+    /**
+     * @return The whole image at a low resolution, or {@code null} if it hasn't been decoded
+     *         yet.
+     */
+    public BufferedImage getOverview() {
+        return overview;
+    }
+
+    /**
+     * @return The most bytes the tile cache may hold.
+     */
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return The bytes currently held by the tile cache.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    //
+    // Actions
+    //
+
+    /**
+     * Adds the tiles covering the region which haven't been decoded to the tiles to decode.
+     *
+     * @param region
+     *            The region, in full resolution pixels.
+     * @param period
+     *            The subsampling the tiles are decoded with.
+     */
+    private void addTiles( Rectangle region, int period ) {
+        if ( region.isEmpty() ) return;
+
+        int span = TILE_SIZE * period;
+        for ( int row = region.y / span; row <= ( ( region.y + region.height - 1 ) / span ); row++ ) {
+            for ( int column = region.x / span; column <= ( ( region.x + region.width - 1 ) / span ); column++ ) {
+                Key key = new Key( period, column, row );
+                if ( !tiles.containsKey( key ) && !wanted.contains( key ) ) wanted.add( key );
+            }
+        }
+    }
+
+    /**
+     * Waits for a tile to decode. The overview is decoded whenever there are no tiles to
+     * decode, until it has been decoded once.
+     *
+     * @return The tile to decode, {@link #OVERVIEW} for the overview, or {@code null} if the
+     *         source was closed while waiting.
+     * @throws InterruptedException
+     *             If the thread was interrupted while waiting.
+     */
+    private synchronized Key awaitTile() throws InterruptedException {
+        while ( !closed && wanted.isEmpty() && ( overview != null ) ) {
+            wait();
+        }
+
+        if ( closed ) return null;
+        if ( wanted.isEmpty() ) {
+            decodingOverview = true;
+            return OVERVIEW;
+        }
+
+        return wanted.remove( 0 );
+    }
+
+    /**
+     * Decodes the overview, giving it up if a tile is asked for part way through.
+     *
+     * @throws IOException
+     *             If the image could not be read.
+     */
+    private void decodeOverview() throws IOException {
+        int period = ( int ) Math.ceil( Math.sqrt( ( ( double ) width * height ) / OVERVIEW_PIXELS ) );
+        BufferedImage decoded = decode( new Rectangle( width, height ), Math.max( 1, period ) );
+
+        synchronized ( this ) {
+            if ( !decodingOverview ) return; // it was aborted, so it isn't finished
+            decodingOverview = false;
+        }
+
+        overview = decoded;
+        fireStateChanged();
+    }
+
+    /**
+     * Decodes the tiles as they are asked for, and the overview in between. Run on the
+     * decoding thread until the source is closed.
+     */
+    private void decodeTiles() {
+        try {
+            for ( Key key = awaitTile(); key != null; key = awaitTile() ) {
+                if ( key == OVERVIEW ) {
+                    decodeOverview();
+                    continue;
+                }
+
+                int span = TILE_SIZE * key.period;
+                Rectangle region = new Rectangle( key.column * span, key.row * span, span, span ).intersection( new Rectangle( width, height ) );
+
+                BufferedImage tile = decode( region, key.period );
+                synchronized ( this ) {
+                    BufferedImage previous = tiles.put( key, tile );
+                    if ( previous != null ) size -= sizeOf( previous );
+
+                    size += sizeOf( tile );
+                    trim();
+                }
+
+                fireStateChanged();
+            }
+        }
+        catch ( IOException e ) {
+            e.printStackTrace();
+        }
+        catch ( InterruptedException e ) {
+            // stop decoding
+        }
+        finally {
+            reader.dispose();
+            try {
+                stream.close();
+            }
+            catch ( IOException e ) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Decodes a region of the image.
+     *
+     * @param region
+     *            The region, in full resolution pixels.
+     * @param period
+     *            Only every {@code period}th pixel across and down is decoded.
+     * @return The region.
+     * @throws IOException
+     *             If the region could not be read.
+     */
+    private BufferedImage decode( Rectangle region, int period ) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion( region );
+        param.setSourceSubsampling( period, period, 0, 0 );
+
+        return reader.read( 0, param );
+    }
+
+    /**
+     * Tells every listener that a tile or the overview has been decoded.
+     */
+    private void fireStateChanged() {
+        ChangeEvent evt = new ChangeEvent( this );
+
+        for ( ChangeListener listener : listeners ) {
+            listener.stateChanged( evt );
+        }
+    }
+
+    /**
+     * Evicts the least recently used tiles until the cache is under budget.
+     */
+    private void trim() {
+        Iterator< BufferedImage > it = tiles.values().iterator();
+        while ( ( size > budget ) && it.hasNext() ) {
+            size -= sizeOf( it.next() );
+            it.remove();
+        }
+    }
+
+    /**
+     * @param tile
+     *            The tile.
+     * @return The number of bytes held by the tile's pixels.
+     */
+    private static long sizeOf( BufferedImage tile ) {
+        return ScaledFrameCache.sizeOf( new BufferedImage[ ] { tile } );
+    }
+
+    //
+    // Overrides
+    //
+
+    /**
+     * Stops decoding and drops every tile. The file is closed by the decoding thread once it
+     * finishes the tile it is on.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        tiles.clear();
+        wanted.clear();
+        size = 0;
+
+        notifyAll();
+    }
+
+    //
+    // Nested Classes
+    //
+
+    /**
+     * Identifies a tile by its subsampling, column and row.
+     *
+     * @author Austin
+     */
+    private static class Key {
+
+        //
+        // Fields
+        //
+
+        /** The subsampling the tile is decoded with. */
+        private final int period;
+
+        /** The column of the tile. */
+        private final int column;
+
+        /** The row of the tile. */
+        private final int row;
+
+        //
+        // Constructors
+        //
+
+        /**
+         * Creates a new Key.
+         *
+         * @param period
+         *            The subsampling the tile is decoded with.
+         * @param column
+         *            The column of the tile.
+         * @param row
+         *            The row of the tile.
+         */
+        public Key( int period, int column, int row ) {
+            this.period = period;
+            this.column = column;
+            this.row = row;
+        }
+
+        //
+        // Overrides
+        //
+
+        @Override
+        public boolean equals( Object obj ) {
+            if ( !( obj instanceof Key ) ) return false;
+
+            Key key = ( Key ) obj;
+            return ( key.period == period ) && ( key.column == column ) && ( key.row == row );
+        }
+
+        @Override
+        public int hashCode() {
+            return ( ( ( 31 * period ) + column ) * 31 ) + row;
+        }
+
+    }
+
+}
@@ -0,0 +1,305 @@
+package com.github.obsidianarch.swingext;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Scales images by splitting the output into tiles and scaling each tile in parallel on a
+ * fork-join pool. Tiles are scaled either by Java2D's bicubic interpolation or by a
+ * {@link Resampler}.
+ *
+ * @author Austin
+ */
+final class TiledScaler {
+
+    //
+    // Constants
+    //
+
+    /** The default width and height of a tile, in output pixels. */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    /**
+     * The number of extra source pixels read around each tile, bicubic interpolation samples
+     * two pixels on either side so anything less would leave seams between tiles.
+     */
+    private static final int OVERLAP          = 3;
+
+    //
+    // Fields
+    //
+
+    /** The pool the tiles are scaled on. */
+    private final ForkJoinPool pool;
+
+    /** The width and height of each tile. */
+    private final int          tileSize;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a new TiledScaler that runs on the common pool, which uses every core.
+     */
+    public TiledScaler() {
+        this( ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE );
+    }
+
+    /**
+     * Constructs a new TiledScaler.
+     *
+     * @param pool
+     *            The pool to scale the tiles on.
+     * @param tileSize
+     *            The width and height of each tile.
+     * @throws IllegalArgumentException
+     *             If {@code pool} was null or {@code tileSize} was not positive.
+     */
+    public TiledScaler( ForkJoinPool pool, int tileSize ) throws IllegalArgumentException {
+        if ( pool == null ) throw new IllegalArgumentException( "pool cannot be null!" );
+        if ( tileSize <= 0 ) throw new IllegalArgumentException( "tileSize must be positive!" );
+
+        this.pool = pool;
+        this.tileSize = tileSize;
+    }
+
+    //
+    // Actions
+    //
+
+    /**
+     * Scales an image by the zoom level.
+     *
+     * @param bi
+     *            The image to scale.
+     * @param zoom
+     *            The new zoom level of the image.
+     * @return The image scaled.
+     */
+    public BufferedImage scale( BufferedImage bi, double zoom ) {
+        return scale( bi, ( int ) ( bi.getWidth() * zoom ), ( int ) ( bi.getHeight() * zoom ), null );
+    }
+
+    /**
+     * Scales an image by the zoom level, giving up part way through if {@code cancelled}
+     * becomes true.
+     *
+     * @param bi
+     *            The image to scale.
+     * @param zoom
+     *            The new zoom level of the image.
+     * @param cancelled
+     *            Checked before each tile is scaled.
+     * @return The image scaled.
+     * @throws CancellationException
+     *             If {@code cancelled} became true before every tile was scaled.
+     */
+    public BufferedImage scale( BufferedImage bi, double zoom, BooleanSupplier cancelled ) throws CancellationException {
+        return scale( bi, ( int ) ( bi.getWidth() * zoom ), ( int ) ( bi.getHeight() * zoom ), cancelled );
+    }
+
+    /**
+     * Scales an image to the given size.
+     *
+     * @param bi
+     *            The image to scale.
+     * @param outWidth
+     *            The width of the scaled image.
+     * @param outHeight
+     *            The height of the scaled image.
+     * @param cancelled
+     *            Checked before each tile is scaled, may be {@code null}.
+     * @return The image scaled.
+     * @throws CancellationException
+     *             If {@code cancelled} became true before every tile was scaled.
+     */
+    public BufferedImage scale( BufferedImage bi, int outWidth, int outHeight, BooleanSupplier cancelled ) throws CancellationException {
+        return scale( bi, CompatibleImages.createScaled( null, bi, outWidth, outHeight ), cancelled );
+    }
+
+    /**
+     * Scales an image into another image, filling the whole of it.
+     *
+     * @param bi
+     *            The image to scale.
+     * @param output
+     *            The image to scale into, its size is the size of the scaled image.
+     * @param cancelled
+     *            Checked before each tile is scaled, may be {@code null}.
+     * @return {@code output}
+     * @throws CancellationException
+     *             If {@code cancelled} became true before every tile was scaled.
+     */
+    public BufferedImage scale( BufferedImage bi, BufferedImage output, BooleanSupplier cancelled ) throws CancellationException {
+        return scale( bi, output, ImageView.FILTER_JAVA2D, cancelled );
+    }
+
+    /**
+     * Scales an image into another image with the given filter, filling the whole of it.
+     *
+     * @param bi
+     *            The image to scale.
+     * @param output
+     *            The image to scale into, its size is the size of the scaled image.
+     * @param filter
+     *            The filter to scale with, one of the ImageView filter constants.
+     * @param cancelled
+     *            Checked before each tile is scaled, may be {@code null}.
+     * @return {@code output}
+     * @throws CancellationException
+     *             If {@code cancelled} became true before every tile was scaled.
+     */
+    public BufferedImage scale( BufferedImage bi, BufferedImage output, int filter, BooleanSupplier cancelled ) throws CancellationException {
+        int columns = ( output.getWidth() + tileSize - 1 ) / tileSize;
+        int rows = ( output.getHeight() + tileSize - 1 ) / tileSize;
+
+        // the weights are worked out once and shared by every tile
+        Resampler resampler = ( filter != ImageView.FILTER_JAVA2D ) ? new Resampler( filter, bi.getWidth(), bi.getHeight(), output.getWidth(), output.getHeight() ) : null;
+
+        pool.invoke( new TileTask( bi, output, resampler, cancelled, columns, 0, columns * rows ) );
+
+        return output;
+    }
+
+    /**
+     * Scales a single tile of the output image, the tile is drawn from just the part of the
+     * source it covers plus an overlapping border, so the result matches scaling the whole
+     * image at once.
+     *
+     * @param bi
+     *            The source image.
+     * @param output
+     *            The image being scaled into.
+     * @param tileX
+     *            The x coordinate of the tile in the output.
+     * @param tileY
+     *            The y coordinate of the tile in the output.
+     */
+    private void scaleTile( BufferedImage bi, BufferedImage output, int tileX, int tileY ) {
+        int tileWidth = Math.min( tileSize, output.getWidth() - tileX );
+        int tileHeight = Math.min( tileSize, output.getHeight() - tileY );
+
+        double scaleX = ( double ) output.getWidth() / bi.getWidth();
+        double scaleY = ( double ) output.getHeight() / bi.getHeight();
+
+        // the region of the source image which is sampled by this tile
+        int srcX0 = Math.max( 0, ( int ) Math.floor( tileX / scaleX ) - OVERLAP );
+        int srcY0 = Math.max( 0, ( int ) Math.floor( tileY / scaleY ) - OVERLAP );
+        int srcX1 = Math.min( bi.getWidth(), ( int ) Math.ceil( ( tileX + tileWidth ) / scaleX ) + OVERLAP );
+        int srcY1 = Math.min( bi.getHeight(), ( int ) Math.ceil( ( tileY + tileHeight ) / scaleY ) + OVERLAP );
+
+        BufferedImage source = bi.getSubimage( srcX0, srcY0, srcX1 - srcX0, srcY1 - srcY0 );
+        BufferedImage tile = output.getSubimage( tileX, tileY, tileWidth, tileHeight ); // shares the output's raster
+
+        Graphics2D grafix = tile.createGraphics();
+        {
+            grafix.setRenderingHint( RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC );
+            grafix.transform( new AffineTransform( scaleX, 0, 0, scaleY, ( srcX0 * scaleX ) - tileX, ( srcY0 * scaleY ) - tileY ) );
+            grafix.drawImage( source, 0, 0, null );
+        }
+        grafix.dispose();
+    }
+
+    //
+    // Nested Classes
+    //
+
+    /**
+     * Scales a range of tiles, splitting the range in half until there is a single tile
+     * left.
+     *
+     * @author Austin
+     */
+    private class TileTask extends RecursiveAction {
+
+        //
+        // Fields
+        //
+
+        /** The source image. */
+        private final BufferedImage   source;
+
+        /** The image being scaled into. */
+        private final BufferedImage   output;
+
+        /** Scales the tiles, or {@code null} to scale them with Java2D. */
+        private final Resampler       resampler;
+
+        /** Checked before the tile is scaled, may be {@code null}. */
+        private final BooleanSupplier cancelled;
+
+        /** The number of tiles in each row. */
+        private final int             columns;
+
+        /** The first tile in the range. */
+        private final int             start;
+
+        /** The tile after the last tile in the range. */
+        private final int             end;
+
+        //
+        // Constructors
+        //
+
+        /**
+         * Creates a new TileTask for the range of tiles [start, end).
+         *
+         * @param source
+         *            The source image.
+         * @param output
+         *            The image being scaled into.
+         * @param resampler
+         *            Scales the tiles, or {@code null} to scale them with Java2D.
+         * @param cancelled
+         *            Checked before the tile is scaled.
+         * @param columns
+         *            The number of tiles in each row.
+         * @param start
+         *            The first tile in the range.
+         * @param end
+         *            The tile after the last tile in the range.
+         */
+        public TileTask( BufferedImage source, BufferedImage output, Resampler resampler, BooleanSupplier cancelled, int columns, int start, int end ) {
+            this.source = source;
+            this.output = output;
+            this.resampler = resampler;
+            this.cancelled = cancelled;
+            this.columns = columns;
+            this.start = start;
+            this.end = end;
+        }
+
+        //
+        // Overrides
+        //
+
+        @Override
+        protected void compute() {
+            if ( ( end - start ) == 1 ) {
+                if ( ( cancelled != null ) && cancelled.getAsBoolean() ) throw new CancellationException( "scale cancelled" );
+
+                int tileX = ( start % columns ) * tileSize;
+                int tileY = ( start / columns ) * tileSize;
+                if ( resampler != null ) {
+                    resampler.resample( source, output, tileX, tileY, Math.min( tileSize, output.getWidth() - tileX ), Math.min( tileSize, output.getHeight() - tileY ) );
+                }
+                else {
+                    scaleTile( source, output, tileX, tileY );
+                }
+                return;
+            }
+
+            int middle = ( start + end ) >>> 1;
+            invokeAll( new TileTask( source, output, resampler, cancelled, columns, start, middle ), new TileTask( source, output, resampler, cancelled, columns, middle, end ) );
+        }
+
+    }
+
+}
@@ -0,0 +1,286 @@
+package com.github.obsidianarch.swingext;
+
+import java.awt.GraphicsConfiguration;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Rescales an ImageView's frames in the background. Only the latest zoom request is ever
+ * worked on, requests which are superseded before they start are dropped and rescales which
+ * are already running are cancelled between tiles.
+ *
+ * @author Austin
+ */
+final class ZoomScheduler {
+
+    //
+    // Constants
+    //
+
+    /** How long the zoom thread waits for more work before it is stopped, in seconds. */
+    private static final long KEEP_ALIVE = 5;
+
+    //
+    // Fields
+    //
+
+    /** The ImageView whose frames we are scaling. */
+    private final ImageView                  component;
+
+    /** The scaler that does the work. */
+    private final TiledScaler                scaler;
+
+    /** Incremented for every request, a request is stale once this no longer matches it. */
+    private final AtomicLong                 generation = new AtomicLong();
+
+    /** The latest request which hasn't been started yet. */
+    private final AtomicReference< Request > pending    = new AtomicReference<>();
+
+    /** The single thread the rescales are run on. */
+    private final ThreadPoolExecutor         executor;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Creates a new ZoomScheduler for the given ImageView.
+     *
+     * @param iv
+     *            The ImageView.
+     * @param scaler
+     *            The scaler used to resize each frame.
+     */
+    public ZoomScheduler( ImageView iv, TiledScaler scaler ) {
+        component = iv;
+        this.scaler = scaler;
+
+        executor = new ThreadPoolExecutor( 1, 1, KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue< Runnable >(), new ThreadFactory() {
+
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread thread = new Thread( r );
+                thread.setName( "Image Zoomer" );
+                thread.setDaemon( true );
+                return thread;
+            }
+
+        } );
+        executor.allowCoreThreadTimeOut( true );
+    }
+
+    //
+    // Actions
+    //
+
+    /**
+     * Requests the frames to be scaled to the given zoom level, any earlier request is
+     * dropped or cancelled. Once the frames are scaled they are handed to the ImageView on
+     * the event dispatch thread.
+     *
+     * @param frames
+     *            The frames to scale.
+     * @param pyramids
+     *            The mipmap pyramid of each frame, or {@code null} to always scale from the
+     *            full size frames.
+     * @param zoom
+     *            The zoom level to scale them to.
+     * @param filter
+     *            The filter to scale them with, one of the ImageView filter constants.
+     * @param gc
+     *            The configuration of the screen the frames are shown on, the scaled frames
+     *            are created in its format. May be {@code null}.
+     */
+    public void schedule( BufferedImage[] frames, ImagePyramid[] pyramids, double zoom, int filter, GraphicsConfiguration gc ) {
+        pending.set( new Request( generation.incrementAndGet(), frames, pyramids, zoom, filter, gc ) );
+
+        executor.execute( new Runnable() {
+
+            @Override
+            public void run() {
+                Request request = pending.getAndSet( null );
+                if ( request != null ) request.run(); // otherwise a later task took it already
+            }
+
+        } );
+    }
+
+    /**
+     * Cancels any pending or running rescale without starting another.
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+        pending.set( null );
+    }
+
+    //
+    // Nested Classes
+    //
+
+    /**
+     * A single request to scale a set of frames.
+     *
+     * @author Austin
+     */
+    private class Request implements Runnable, BooleanSupplier {
+
+        //
+        // Fields
+        //
+
+        /** The generation this request was made in. */
+        private final long                  id;
+
+        /** The frames to scale. */
+        private final BufferedImage[]       sources;
+
+        /** The mipmap pyramid of each frame, may be {@code null}. */
+        private final ImagePyramid[]        pyramids;
+
+        /** The zoom level to scale to. */
+        private final double                zoom;
+
+        /** The filter to scale with. */
+        private final int                   filter;
+
+        /** The configuration of the screen the frames are shown on, may be {@code null}. */
+        private final GraphicsConfiguration gc;
+
+        //
+        // Constructors
+        //
+
+        /**
+         * Creates a new Request.
+         *
+         * @param id
+         *            The generation this request was made in.
+         * @param sources
+         *            The frames to scale.
+         * @param pyramids
+         *            The mipmap pyramid of each frame, may be {@code null}.
+         * @param zoom
+         *            The zoom level to scale to.
+         * @param filter
+         *            The filter to scale with.
+         * @param gc
+         *            The configuration of the screen the frames are shown on, may be
+         *            {@code null}.
+         */
+        public Request( long id, BufferedImage[] sources, ImagePyramid[] pyramids, double zoom, int filter, GraphicsConfiguration gc ) {
+            this.id = id;
+            this.sources = sources;
+            this.pyramids = pyramids;
+            this.zoom = zoom;
+            this.filter = filter;
+            this.gc = gc;
+        }
+
+        //
+        // Actions
+        //
+
+        /**
+         * Hands the scaled frames to the ImageView if nothing has superseded this request.
+         *
+         * @param output
+         *            The scaled frames.
+         */
+        private void publish( final BufferedImage[] output ) {
+            SwingUtilities.invokeLater( new Runnable() {
+
+                @Override
+                public void run() {
+                    if ( !getAsBoolean() ) component.setZoomedFrames( output );
+                }
+
+            } );
+        }
+
+        /**
+         * Scales a single frame into the screen's format, starting from the nearest pyramid
+         * level if there is one. At 100% the frame is only converted to the screen's format,
+         * if it isn't in it already.
+         *
+         * @param index
+         *            The index of the frame.
+         * @return The frame scaled.
+         * @throws CancellationException
+         *             If this request was superseded part way through the frame.
+         */
+        private BufferedImage scale( int index ) throws CancellationException {
+            if ( zoom == 1.0 ) return CompatibleImages.convert( sources[ index ], gc );
+
+            int outWidth = ( int ) ( sources[ index ].getWidth() * zoom );
+            int outHeight = ( int ) ( sources[ index ].getHeight() * zoom );
+
+            BufferedImage source = ( pyramids != null ) ? pyramids[ index ].getLevel( zoom ) : sources[ index ];
+            return scaler.scale( source, CompatibleImages.createScaled( gc, sources[ index ], outWidth, outHeight ), filter, this );
+        }
+
+        //
+        // Getters
+        //
+
+        /**
+         * @return If every source frame is already in the screen's format.
+         */
+        private boolean isCompatible() {
+            for ( BufferedImage source : sources ) {
+                if ( !CompatibleImages.isCompatible( source, gc ) ) return false;
+            }
+
+            return true;
+        }
+
+        //
+        // Overrides
+        //
+
+        /**
+         * @return If this request has been superseded.
+         */
+        @Override
+        public boolean getAsBoolean() {
+            return id != generation.get();
+        }
+
+        @Override
+        public void run() {
+            if ( sources == null ) return;
+
+            // take the shortcut to save time
+            if ( ( zoom == 1.0 ) && isCompatible() ) {
+                publish( sources );
+                return;
+            }
+
+            BufferedImage[] output = new BufferedImage[ sources.length ];
+            try {
+                for ( int i = 0; i < output.length; i++ ) {
+                    if ( getAsBoolean() ) return; // a newer zoom level was requested
+
+                    long start = System.nanoTime();
+                    output[ i ] = scale( i );
+                    component.fireFrameScaled( i, zoom, System.nanoTime() - start );
+                }
+            }
+            catch ( CancellationException e ) {
+                return; // a newer zoom level was requested part way through a frame
+            }
+
+            publish( output );
+        }
+
+    }
+
+}